@@ -0,0 +1,26 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import ru.yandex.practicum.filmorate.model.Film;
+
+import java.util.Collection;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class FilmStorageBenchmark {
+
+    @Benchmark
+    public Collection<Film> getAll(StorageFixture fixture) {
+        return fixture.filmStorage.getAll();
+    }
+
+    @Benchmark
+    public Optional<Film> getById(StorageFixture fixture) {
+        return fixture.filmStorage.getById(fixture.randomId());
+    }
+}
@@ -0,0 +1,30 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class LikesStorageBenchmark {
+    private static final int TOP_COUNT = 10;
+
+    @Benchmark
+    public Set<Long> getTopFilmLikes(StorageFixture fixture) {
+        return fixture.likesStorage.getTopFilmLikes(TOP_COUNT);
+    }
+
+    /**
+     * Лайк и его отмена одной парой, чтобы число лайков не менялось за время замера.
+     */
+    @Benchmark
+    public void addAndRemoveLike(StorageFixture fixture) {
+        long filmId = fixture.randomId();
+        fixture.likesStorage.addLike(filmId, fixture.likeWriterId);
+        fixture.likesStorage.removeLike(filmId, fixture.likeWriterId);
+    }
+}
@@ -0,0 +1,146 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.flywaydb.core.Flyway;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Friendship;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Like;
+import ru.yandex.practicum.filmorate.model.MPA;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.catalog.ReferenceDataCatalog;
+import ru.yandex.practicum.filmorate.storage.film.FilmDbStorage;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.film.InMemoryFilmStorage;
+import ru.yandex.practicum.filmorate.storage.likes.InMemoryLikesStorage;
+import ru.yandex.practicum.filmorate.storage.likes.LikesDbStorage;
+import ru.yandex.practicum.filmorate.storage.likes.LikesStorage;
+import ru.yandex.practicum.filmorate.storage.user.InMemoryUserStorage;
+import ru.yandex.practicum.filmorate.storage.user.UserDbStorage;
+import ru.yandex.practicum.filmorate.storage.user.UserStorage;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Хранилища с данными для бенчмарков: size фильмов и size пользователей, у каждого пользователя
+ * FRIENDS_PER_USER друзей и LIKES_PER_USER лайков. Лайки смещены к фильмам с малыми id, чтобы
+ * рейтинг был неравномерным, как у реальных данных. Для storage=db хранилища работают со своей
+ * встроенной H2 в памяти, схема создаётся миграциями Flyway приложения; хранилища в памяти
+ * читают из той же H2 только справочники. События хранилищ никуда не отправляются.
+ * Отдельный пользователь likeWriterId ничего не лайкает при заполнении: бенчмарки записи
+ * ставят и снимают его лайки, не трогая остальные данные.
+ */
+@State(Scope.Benchmark)
+public class StorageFixture {
+    private static final int FRIENDS_PER_USER = 10;
+    private static final int LIKES_PER_USER = 10;
+
+    @Param({"db", "memory"})
+    public String storage;
+
+    @Param({"100", "1000", "10000"})
+    public int size;
+
+    FilmStorage filmStorage;
+    UserStorage userStorage;
+    LikesStorage likesStorage;
+    long likeWriterId;
+
+    private HikariDataSource dataSource;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl("jdbc:h2:mem:benchmark-" + UUID.randomUUID());
+        dataSource.setUsername("sa");
+        Flyway.configure().dataSource(dataSource).load().migrate();
+
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        ReferenceDataCatalog catalog = new ReferenceDataCatalog(jdbcTemplate);
+        catalog.reload();
+        ApplicationEventPublisher events = event -> {
+        };
+        if ("db".equals(storage)) {
+            filmStorage = new FilmDbStorage(jdbcTemplate, catalog, events);
+            userStorage = new UserDbStorage(jdbcTemplate, events);
+            likesStorage = new LikesDbStorage(jdbcTemplate, events);
+        } else {
+            InMemoryFilmStorage inMemoryFilmStorage = new InMemoryFilmStorage(catalog, events);
+            filmStorage = inMemoryFilmStorage;
+            userStorage = new InMemoryUserStorage(events);
+            likesStorage = new InMemoryLikesStorage(inMemoryFilmStorage, events);
+        }
+        populate(new Random(42));
+    }
+
+    /**
+     * База в памяти удаляется вместе с последним соединением пула.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        dataSource.close();
+    }
+
+    long randomId() {
+        return ThreadLocalRandom.current().nextLong(1, size + 1);
+    }
+
+    private void populate(Random random) {
+        List<Film> films = new ArrayList<>(size);
+        List<User> users = new ArrayList<>(size + 1);
+        for (int i = 1; i <= size; i++) {
+            LinkedHashSet<Genre> genres = new LinkedHashSet<>();
+            genres.add(Genre.builder().id(1 + i % 6).build());
+            genres.add(Genre.builder().id(1 + i % 4).build());
+            films.add(Film.builder()
+                    .name("film" + i)
+                    .description("description of film " + i)
+                    .releaseDate(LocalDate.of(1950 + i % 70, 1 + i % 12, 1))
+                    .duration(60 + i % 120)
+                    .mpa(MPA.builder().id(1 + i % 5).build())
+                    .genres(genres)
+                    .build());
+        }
+        for (int i = 1; i <= size + 1; i++) {
+            users.add(User.builder()
+                    .email("user" + i + "@mail.ru")
+                    .login("user" + i)
+                    .name("user " + i)
+                    .birthday(LocalDate.of(1970 + i % 40, 1 + i % 12, 1))
+                    .build());
+        }
+        filmStorage.addAll(films);
+        likeWriterId = userStorage.addAll(users).get(size).getId();
+
+        List<Friendship> friendships = new ArrayList<>(size * FRIENDS_PER_USER);
+        List<Like> likes = new ArrayList<>(size * LIKES_PER_USER);
+        for (long userId = 1; userId <= size; userId++) {
+            for (int i = 0; i < FRIENDS_PER_USER; i++) {
+                long friendId = 1 + random.nextInt(size);
+                if (friendId != userId) {
+                    friendships.add(new Friendship(userId, friendId));
+                }
+            }
+            for (int i = 0; i < LIKES_PER_USER; i++) {
+                double skewed = random.nextDouble() * random.nextDouble();
+                likes.add(new Like(1 + (long) (skewed * size), userId));
+            }
+        }
+        userStorage.addFriends(friendships);
+        likesStorage.addLikes(likes);
+    }
+}
@@ -0,0 +1,32 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class UserStorageBenchmark {
+
+    @Benchmark
+    public Collection<User> getAll(StorageFixture fixture) {
+        return fixture.userStorage.getAll();
+    }
+
+    @Benchmark
+    public Optional<User> getById(StorageFixture fixture) {
+        return fixture.userStorage.getById(fixture.randomId());
+    }
+
+    @Benchmark
+    public List<User> getCommonFriends(StorageFixture fixture) {
+        return fixture.userStorage.getCommonFriends(fixture.randomId(), fixture.randomId());
+    }
+}
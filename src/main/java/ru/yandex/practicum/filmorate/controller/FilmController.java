@@ -2,11 +2,25 @@ package ru.yandex.practicum.filmorate.controller;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.yandex.practicum.filmorate.index.EntityVersions;
+import ru.yandex.practicum.filmorate.model.BatchItemResult;
+import ru.yandex.practicum.filmorate.model.FacetedPage;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmFilter;
+import ru.yandex.practicum.filmorate.model.Like;
+import ru.yandex.practicum.filmorate.model.Page;
 import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.RecommendationService;
 
 import javax.validation.Valid;
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.Collection;
 import java.util.List;
 
@@ -16,6 +30,9 @@ import java.util.List;
 @RequestMapping("/films")
 public class FilmController {
     private final FilmService filmService;
+    private final RecommendationService recommendationService;
+    private final NdjsonStreamer ndjsonStreamer;
+    private final EntityVersions entityVersions;
 
     @PostMapping
     public Film addFilm(@Valid @RequestBody Film film) {
@@ -23,6 +40,17 @@ public class FilmController {
         return filmService.addFilm(film);
     }
 
+    @PostMapping(value = "/batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public List<BatchItemResult> addFilms(@RequestBody List<Film> films) {
+        log.info("Пакетное добавление фильмов: " + films.size());
+        return filmService.addFilms(films);
+    }
+
+    @PostMapping(value = "/batch", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    public List<BatchItemResult> addFilmsNdjson(InputStream body) throws IOException {
+        return addFilms(ndjsonStreamer.read(body, Film.class));
+    }
+
     @PutMapping
     public Film updateFilm(@Valid @RequestBody Film film) {
         log.info("Обновление фильма " + film.getId() + "...");
@@ -37,15 +65,78 @@ public class FilmController {
     }
 
     @GetMapping
-    public Collection<Film> getAllFilms() {
-        log.info("Вызов списка всех фильмов.");
-        return filmService.getAllFilms();
+    public ResponseEntity<Collection<Film>> getAllFilms(@RequestParam(value = "after", required = false) Long after,
+                                                        @RequestParam(value = "limit", required = false) Integer limit) {
+        if (after == null && limit == null) {
+            log.info("Вызов списка всех фильмов.");
+            return ResponseEntity.ok(filmService.getAllFilms());
+        }
+        log.info("Вызов страницы фильмов после id " + after + "...");
+        Page<Film> page = filmService.getFilmsPage(after, limit);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.getNextCursor() != null) {
+            response.header(Page.NEXT_CURSOR_HEADER, String.valueOf(page.getNextCursor()));
+        }
+        return response.body(page.getItems());
+    }
+
+    @GetMapping("/facets")
+    public ResponseEntity<FacetedPage<Film>> getFilmsByFacets(
+            @RequestParam(value = "after", required = false) Long after,
+            @RequestParam(value = "limit", required = false) Integer limit,
+            @RequestParam(value = "genre", required = false) List<Integer> genres,
+            @RequestParam(value = "mpa", required = false) List<Integer> mpa,
+            @RequestParam(value = "yearFrom", required = false) Integer yearFrom,
+            @RequestParam(value = "yearTo", required = false) Integer yearTo) {
+        FilmFilter filter = FilmFilter.builder()
+                .genres(genres)
+                .mpa(mpa)
+                .yearFrom(yearFrom)
+                .yearTo(yearTo)
+                .build();
+        log.info("Вызов фильмов по фильтру " + filter + " после id " + after + "...");
+        FacetedPage<Film> page = filmService.getFilmsByFacets(filter, after, limit);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.getNextCursor() != null) {
+            response.header(Page.NEXT_CURSOR_HEADER, String.valueOf(page.getNextCursor()));
+        }
+        return response.body(page);
+    }
+
+    @GetMapping("/stream")
+    public ResponseEntity<StreamingResponseBody> streamAllFilms() {
+        log.info("Выгрузка всех фильмов потоком...");
+        return ndjsonStreamer.stream(filmService::streamAllFilms);
+    }
+
+    @GetMapping("/search")
+    public List<Film> searchFilms(@RequestParam("q") String query,
+                                  @RequestParam(value = "limit", required = false) Integer limit) {
+        log.info("Поиск фильмов по запросу \"" + query + "\"...");
+        return filmService.searchFilms(query, limit);
     }
 
     @GetMapping("/{id}")
-    public Film getFilmById(@PathVariable Long id) {
+    public Film getFilmById(@PathVariable Long id, WebRequest request) {
+        // Тег берётся до чтения фильма, а отдаётся только после него: у несуществующего id тега нет.
+        String tag = entityVersions.getFilmTag(id);
         log.info("Вызов фильма по id:" + id + "...");
-        return filmService.getFilmById(id);
+        Film film = filmService.getFilmById(id);
+        return request.checkNotModified(tag) ? null : film;
+    }
+
+    @GetMapping("/{id}/similar")
+    public List<Film> getSimilarFilms(@PathVariable Long id,
+                                      @RequestParam(value = "limit", required = false) Integer limit) {
+        log.info("Вызов похожих фильмов для фильма " + id + "...");
+        return recommendationService.getSimilarFilms(id, limit);
+    }
+
+    @PostMapping("/similar/recompute")
+    @ResponseStatus(HttpStatus.ACCEPTED)
+    public void recomputeSimilarFilms() {
+        log.info("Запрос пересчёта похожих фильмов...");
+        recommendationService.recomputeSimilarFilms();
     }
 
     @PutMapping("/{id}/like/{userId}")
@@ -55,6 +146,17 @@ public class FilmController {
         log.info("Лайк добавлен");
     }
 
+    @PutMapping(value = "/likes/batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public List<BatchItemResult> addLikes(@RequestBody List<Like> likes) {
+        log.info("Пакетное добавление лайков: " + likes.size());
+        return filmService.addLikes(likes);
+    }
+
+    @PutMapping(value = "/likes/batch", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    public List<BatchItemResult> addLikesNdjson(InputStream body) throws IOException {
+        return addLikes(ndjsonStreamer.read(body, Like.class));
+    }
+
     @DeleteMapping("/{id}/like/{userId}")
     public void deleteLike(@PathVariable Long id, @PathVariable Long userId) {
         log.info("Удаление лайка пользователем " + userId + " фильму " + id + "...");
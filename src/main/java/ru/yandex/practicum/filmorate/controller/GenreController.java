@@ -5,6 +5,8 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import ru.yandex.practicum.filmorate.index.EntityVersions;
 import ru.yandex.practicum.filmorate.model.Genre;
 import ru.yandex.practicum.filmorate.service.GenreService;
 
@@ -15,14 +17,21 @@ import java.util.List;
 @RequestMapping("/genres")
 public class GenreController {
     private final GenreService genreService;
+    private final EntityVersions entityVersions;
 
     @GetMapping("/{id}")
-    public Genre getGenreById(@PathVariable int id) {
+    public Genre getGenreById(@PathVariable int id, WebRequest request) {
+        if (request.checkNotModified(entityVersions.getReferenceTag())) {
+            return null;
+        }
         return genreService.getGenreById(id);
     }
 
     @GetMapping
-    public List<Genre> getAllGenre() {
+    public List<Genre> getAllGenre(WebRequest request) {
+        if (request.checkNotModified(entityVersions.getReferenceTag())) {
+            return null;
+        }
         return genreService.getAllGenre();
     }
 }
\ No newline at end of file
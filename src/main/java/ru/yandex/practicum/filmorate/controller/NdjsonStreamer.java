@@ -0,0 +1,56 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.function.Consumer;
+
+@Component
+public class NdjsonStreamer {
+    private final ObjectMapper objectMapper;
+    private final ObjectWriter objectWriter;
+
+    public NdjsonStreamer(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+        this.objectWriter = objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    }
+
+    public ResponseEntity<StreamingResponseBody> stream(Consumer<Consumer<Object>> source) {
+        StreamingResponseBody body = out -> {
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+                generator.setRootValueSeparator(new SerializedString("\n"));
+                source.accept(item -> write(generator, item));
+                generator.writeRaw('\n');
+            }
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
+    }
+
+    public <T> List<T> read(InputStream in, Class<T> type) throws IOException {
+        try (MappingIterator<T> iterator = objectMapper.readerFor(type).readValues(in)) {
+            return iterator.readAll();
+        }
+    }
+
+    private void write(JsonGenerator generator, Object item) {
+        try {
+            objectWriter.writeValue(generator, item);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -5,6 +5,8 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import ru.yandex.practicum.filmorate.index.EntityVersions;
 import ru.yandex.practicum.filmorate.model.MPA;
 import ru.yandex.practicum.filmorate.service.RatingService;
 
@@ -16,17 +18,21 @@ import java.util.List;
 @RequestMapping("/mpa")
 public class RatingController {
     private final RatingService ratingService;
+    private final EntityVersions entityVersions;
 
     @GetMapping("/{id}")
-    public MPA getMpaById(@PathVariable Integer id) {
-        if (ratingService.getRatingById(id).isPresent()) {
-            return ratingService.getRatingById(id).get();
+    public MPA getMpaById(@PathVariable Integer id, WebRequest request) {
+        if (request.checkNotModified(entityVersions.getReferenceTag())) {
+            return null;
         }
-        return null;
+        return ratingService.getRatingById(id);
     }
 
     @GetMapping
-    public List<MPA> getMpaAll() {
+    public List<MPA> getMpaAll(WebRequest request) {
+        if (request.checkNotModified(entityVersions.getReferenceTag())) {
+            return null;
+        }
         return ratingService.getRatingAll();
     }
 }
\ No newline at end of file
@@ -2,12 +2,26 @@ package ru.yandex.practicum.filmorate.controller;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.yandex.practicum.filmorate.index.EntityVersions;
+import ru.yandex.practicum.filmorate.model.BatchItemResult;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FriendSuggestion;
+import ru.yandex.practicum.filmorate.model.Friendship;
+import ru.yandex.practicum.filmorate.model.Page;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.RecommendationService;
 import ru.yandex.practicum.filmorate.service.UserService;
 
 import javax.validation.Valid;
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.Collection;
+import java.util.List;
 
 @RestController
 @Slf4j
@@ -15,6 +29,9 @@ import java.util.Collection;
 @RequiredArgsConstructor
 public class UserController {
     private final UserService userService;
+    private final RecommendationService recommendationService;
+    private final NdjsonStreamer ndjsonStreamer;
+    private final EntityVersions entityVersions;
 
     @PostMapping
     public User createUser(@Valid @RequestBody User user) {
@@ -22,6 +39,17 @@ public class UserController {
         return userService.createUser(user);
     }
 
+    @PostMapping(value = "/batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public List<BatchItemResult> createUsers(@RequestBody List<User> users) {
+        log.info("Пакетное создание пользователей: " + users.size());
+        return userService.addUsers(users);
+    }
+
+    @PostMapping(value = "/batch", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    public List<BatchItemResult> createUsersNdjson(InputStream body) throws IOException {
+        return createUsers(ndjsonStreamer.read(body, User.class));
+    }
+
     @PutMapping
     public User updateUser(@Valid @RequestBody User user) {
         log.info("Обновление пользователя " + user.getId() + "...");
@@ -36,15 +64,33 @@ public class UserController {
     }
 
     @GetMapping
-    public Collection<User> getAllUsers() {
-        log.info("Вызов всех пользователей...");
-        return userService.getAllUsers();
+    public ResponseEntity<Collection<User>> getAllUsers(@RequestParam(value = "after", required = false) Long after,
+                                                        @RequestParam(value = "limit", required = false) Integer limit) {
+        if (after == null && limit == null) {
+            log.info("Вызов всех пользователей...");
+            return ResponseEntity.ok(userService.getAllUsers());
+        }
+        log.info("Вызов страницы пользователей после id " + after + "...");
+        Page<User> page = userService.getUsersPage(after, limit);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.getNextCursor() != null) {
+            response.header(Page.NEXT_CURSOR_HEADER, String.valueOf(page.getNextCursor()));
+        }
+        return response.body(page.getItems());
+    }
+
+    @GetMapping("/stream")
+    public ResponseEntity<StreamingResponseBody> streamAllUsers() {
+        log.info("Выгрузка всех пользователей потоком...");
+        return ndjsonStreamer.stream(userService::streamAllUsers);
     }
 
     @GetMapping(value = "/{id}")
-    public User getUserById(@Valid @PathVariable Long id) {
+    public User getUserById(@Valid @PathVariable Long id, WebRequest request) {
+        String tag = entityVersions.getUserTag(id);
         log.info("Вызов пользователя по ID:" + id + "...");
-        return userService.getUserById(id);
+        User user = userService.getUserById(id);
+        return request.checkNotModified(tag) ? null : user;
     }
 
     @PutMapping("/{id}/friends/{userId}")
@@ -54,6 +100,17 @@ public class UserController {
         log.info("Друг добавлен");
     }
 
+    @PutMapping(value = "/friends/batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public List<BatchItemResult> addFriends(@RequestBody List<Friendship> friendships) {
+        log.info("Пакетное добавление друзей: " + friendships.size());
+        return userService.addFriends(friendships);
+    }
+
+    @PutMapping(value = "/friends/batch", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    public List<BatchItemResult> addFriendsNdjson(InputStream body) throws IOException {
+        return addFriends(ndjsonStreamer.read(body, Friendship.class));
+    }
+
     @DeleteMapping("/{id}/friends/{userId}")
     public void deleteFriend(@Valid @PathVariable Long id, @Valid @PathVariable Long userId) {
         log.info("Добавление друга " + id + "...");
@@ -62,15 +119,38 @@ public class UserController {
     }
 
     @GetMapping("/{id}/friends")
-    public Collection<User> getListOfFriends(@Valid @PathVariable Long id) {
+    public Collection<User> getListOfFriends(@Valid @PathVariable Long id, WebRequest request) {
+        userService.checkUserExists(id);
+        if (request.checkNotModified(entityVersions.getFriendsTag(id))) {
+            return null;
+        }
         log.info("Вызов друзей пользователя" + id + "...");
         return userService.getListOfFriends(id);
     }
 
+    @GetMapping("/{id}/friends/suggestions")
+    public List<FriendSuggestion> getFriendSuggestions(@PathVariable Long id,
+                                                       @RequestParam(value = "limit", required = false) Integer limit) {
+        log.info("Вызов рекомендаций друзей для пользователя " + id + "...");
+        return userService.getFriendSuggestions(id, limit);
+    }
 
     @GetMapping("/{id}/friends/common/{userId}")
     public Collection<User> getListSharedFriends(@Valid @PathVariable Long id, @Valid @PathVariable Long userId) {
         log.info("Вызов взаимных друзей пользователя " + id + " и пользователя " + userId + "...");
         return userService.getListSharedFriends(id, userId);
     }
+
+    @GetMapping("/{id}/recommendations")
+    public List<Film> getRecommendations(@PathVariable Long id,
+                                         @RequestParam(value = "limit", required = false) Integer limit) {
+        log.info("Вызов рекомендаций фильмов для пользователя " + id + "...");
+        return recommendationService.getRecommendations(id, limit);
+    }
+
+    @GetMapping("/friends/common")
+    public Collection<User> getCommonFriends(@RequestParam("ids") List<Long> ids) {
+        log.info("Вызов общих друзей пользователей " + ids + "...");
+        return userService.getCommonFriends(ids);
+    }
 }
\ No newline at end of file
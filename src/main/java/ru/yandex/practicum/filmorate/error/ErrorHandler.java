@@ -1,6 +1,7 @@
 package ru.yandex.practicum.filmorate.error;
 
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.TransientDataAccessException;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.*;
 import javax.validation.ValidationException;
@@ -31,6 +32,16 @@ public class ErrorHandler {
         );
     }
 
+    @ExceptionHandler
+    @ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+    public Map<String, String> handleOverloadError(final TransientDataAccessException e) {
+        log.info("код 503");
+        return Map.of(
+                "error", "Сервис перегружен, повторите запрос позже",
+                "errorMessage", e.getMessage()
+        );
+    }
+
     @ExceptionHandler({IllegalArgumentException.class, NullPointerException.class})
     @ResponseStatus(HttpStatus.INTERNAL_SERVER_ERROR)
     public Map<String, String> handleInternalError(final RuntimeException e) {
@@ -0,0 +1,23 @@
+package ru.yandex.practicum.filmorate.index;
+
+import java.util.Objects;
+
+/**
+ * Перевод id сущностей в номера битов RoaringBitmap. Карты адресуются int, поэтому id,
+ * не помещающиеся в положительный int, в индексы не попадают.
+ */
+final class BitmapIds {
+
+    private BitmapIds() {
+    }
+
+    /**
+     * @return номер бита или -1, если id пустой, неположительный или больше Integer.MAX_VALUE
+     */
+    static int toBitmapId(Long id) {
+        if (Objects.isNull(id) || id <= 0 || id > Integer.MAX_VALUE) {
+            return -1;
+        }
+        return id.intValue();
+    }
+}
@@ -0,0 +1,78 @@
+package ru.yandex.practicum.filmorate.index;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.yandex.practicum.filmorate.storage.catalog.ReferenceDataCatalog;
+import ru.yandex.practicum.filmorate.storage.event.FilmEvent;
+import ru.yandex.practicum.filmorate.storage.event.FriendshipEvent;
+import ru.yandex.practicum.filmorate.storage.event.LikeEvent;
+import ru.yandex.practicum.filmorate.storage.event.UserEvent;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Версии сущностей для ETag. Каждое изменение в хранилищах берёт следующее значение общего
+ * монотонного счётчика и записывает его как версию фильма, пользователя или списка друзей;
+ * у сущности, не менявшейся с запуска, версия 0. Счётчик живёт только в памяти, поэтому
+ * в тег входит время запуска, и после перезапуска все старые теги перестают совпадать.
+ * Список друзей содержит данные друзей, поэтому его тег включает версию последнего изменения
+ * любого пользователя.
+ */
+@Component
+@RequiredArgsConstructor
+public class EntityVersions {
+    private final ReferenceDataCatalog referenceDataCatalog;
+    private final String epoch = Long.toString(System.currentTimeMillis(), Character.MAX_RADIX);
+    private final AtomicLong clock = new AtomicLong();
+    private final AtomicLong lastUserChange = new AtomicLong();
+    private final Map<Long, Long> films = new ConcurrentHashMap<>();
+    private final Map<Long, Long> users = new ConcurrentHashMap<>();
+    private final Map<Long, Long> friendLists = new ConcurrentHashMap<>();
+
+    public String getFilmTag(Long filmId) {
+        return epoch + "-f" + films.getOrDefault(filmId, 0L);
+    }
+
+    public String getUserTag(Long userId) {
+        return epoch + "-u" + users.getOrDefault(userId, 0L);
+    }
+
+    public String getFriendsTag(Long userId) {
+        return epoch + "-l" + friendLists.getOrDefault(userId, 0L) + "-" + lastUserChange.get();
+    }
+
+    public String getReferenceTag() {
+        return epoch + "-r" + referenceDataCatalog.getVersion();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onFilm(FilmEvent event) {
+        bump(films, event.getFilmId());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onLike(LikeEvent event) {
+        bump(films, event.getFilmId());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUser(UserEvent event) {
+        lastUserChange.accumulateAndGet(bump(users, event.getUserId()), Math::max);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onFriendship(FriendshipEvent event) {
+        bump(friendLists, event.getUserId());
+    }
+
+    private long bump(Map<Long, Long> versions, Long id) {
+        long version = clock.incrementAndGet();
+        if (id != null) {
+            versions.merge(id, version, Math::max);
+        }
+        return version;
+    }
+}
@@ -0,0 +1,231 @@
+package ru.yandex.practicum.filmorate.index;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.roaringbitmap.FastAggregation;
+import org.roaringbitmap.PeekableIntIterator;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.yandex.practicum.filmorate.model.FacetedPage;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmFilter;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.storage.event.FilmEvent;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Битовые карты id фильмов по значениям фасетов: жанру, рейтингу MPA и году выхода.
+ * Внутри фасета выбранные значения объединяются (OR), между фасетами — пересекаются (AND);
+ * страница читается из итоговой карты начиная с курсора. Счётчик значения фасета считается
+ * по результату без фильтра этого же фасета, чтобы клиент видел, сколько фильмов добавит
+ * ещё одно выбранное значение.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(value = "filmorate.facets.enabled", havingValue = "true", matchIfMissing = true)
+public class FilmFacetIndex {
+    private static final int NO_VALUE = -1;
+
+    private final FilmStorage filmStorage;
+    private final RoaringBitmap allFilms = new RoaringBitmap();
+    private final Map<Integer, RoaringBitmap> byGenre = new HashMap<>();
+    private final Map<Integer, RoaringBitmap> byMpa = new HashMap<>();
+    private final NavigableMap<Integer, RoaringBitmap> byYear = new TreeMap<>();
+    private final Map<Integer, FilmFacets> facetsByFilm = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    @PostConstruct
+    public void rebuild() {
+        lock.writeLock().lock();
+        try {
+            allFilms.clear();
+            byGenre.clear();
+            byMpa.clear();
+            byYear.clear();
+            facetsByFilm.clear();
+            filmStorage.streamAll(this::index);
+            allFilms.runOptimize();
+            byGenre.values().forEach(RoaringBitmap::runOptimize);
+            byMpa.values().forEach(RoaringBitmap::runOptimize);
+            byYear.values().forEach(RoaringBitmap::runOptimize);
+            log.info("Индекс фасетов построен: {} фильмов, {} жанров, {} рейтингов, {} лет",
+                    allFilms.getCardinality(), byGenre.size(), byMpa.size(), byYear.size());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public FacetedPage<Long> filter(FilmFilter filter, Long after, int limit) {
+        lock.readLock().lock();
+        try {
+            RoaringBitmap genres = union(byGenre, filter.getGenres());
+            RoaringBitmap mpa = union(byMpa, filter.getMpa());
+            RoaringBitmap years = yearRange(filter.getYearFrom(), filter.getYearTo());
+            RoaringBitmap result = intersect(genres, mpa, years);
+
+            List<Long> filmIds = new ArrayList<>(Math.min(limit, result.getCardinality()));
+            PeekableIntIterator iterator = result.getIntIterator();
+            if (after != null) {
+                if (after >= Integer.MAX_VALUE) {
+                    iterator = new RoaringBitmap().getIntIterator();
+                } else {
+                    iterator.advanceIfNeeded((int) Math.max(0, after + 1));
+                }
+            }
+            while (iterator.hasNext() && filmIds.size() < limit) {
+                filmIds.add((long) iterator.next());
+            }
+            Long nextCursor = iterator.hasNext() && !filmIds.isEmpty() ? filmIds.get(filmIds.size() - 1) : null;
+
+            Map<String, Map<Integer, Integer>> facets = new LinkedHashMap<>();
+            facets.put(FacetedPage.GENRE_FACET, count(byGenre, intersect(null, mpa, years)));
+            facets.put(FacetedPage.MPA_FACET, count(byMpa, intersect(genres, null, years)));
+            facets.put(FacetedPage.YEAR_FACET, count(byYear, intersect(genres, mpa, null)));
+            return new FacetedPage<>(filmIds, nextCursor, result.getCardinality(), facets);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onFilm(FilmEvent event) {
+        lock.writeLock().lock();
+        try {
+            switch (event.getType()) {
+                case ADDED:
+                case UPDATED:
+                    if (event.getFilm() != null) {
+                        unindex(event.getFilmId());
+                        index(event.getFilm());
+                    }
+                    break;
+                case DELETED:
+                    unindex(event.getFilmId());
+                    break;
+                default:
+                    break;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void index(Film film) {
+        int filmId = BitmapIds.toBitmapId(film.getId());
+        if (filmId <= 0) {
+            return;
+        }
+        int[] genreIds = film.getGenres() == null ? new int[0]
+                : film.getGenres().stream().mapToInt(Genre::getId).distinct().toArray();
+        int mpaId = film.getMpa() == null || film.getMpa().getId() == null ? NO_VALUE : film.getMpa().getId();
+        int year = film.getReleaseDate() == null ? NO_VALUE : film.getReleaseDate().getYear();
+        FilmFacets facets = new FilmFacets(genreIds, mpaId, year);
+        facetsByFilm.put(filmId, facets);
+        allFilms.add(filmId);
+        for (int genreId : genreIds) {
+            byGenre.computeIfAbsent(genreId, id -> new RoaringBitmap()).add(filmId);
+        }
+        if (mpaId != NO_VALUE) {
+            byMpa.computeIfAbsent(mpaId, id -> new RoaringBitmap()).add(filmId);
+        }
+        if (year != NO_VALUE) {
+            byYear.computeIfAbsent(year, id -> new RoaringBitmap()).add(filmId);
+        }
+    }
+
+    private void unindex(Long id) {
+        int filmId = BitmapIds.toBitmapId(id);
+        FilmFacets facets = filmId > 0 ? facetsByFilm.remove(filmId) : null;
+        if (facets == null) {
+            return;
+        }
+        allFilms.remove(filmId);
+        for (int genreId : facets.getGenreIds()) {
+            removeFrom(byGenre, genreId, filmId);
+        }
+        removeFrom(byMpa, facets.getMpaId(), filmId);
+        removeFrom(byYear, facets.getYear(), filmId);
+    }
+
+    private RoaringBitmap union(Map<Integer, RoaringBitmap> bitmaps, Collection<Integer> values) {
+        if (values == null || values.isEmpty()) {
+            return null;
+        }
+        List<RoaringBitmap> selected = new ArrayList<>(values.size());
+        for (Integer value : values) {
+            RoaringBitmap bitmap = value == null ? null : bitmaps.get(value);
+            if (bitmap != null) {
+                selected.add(bitmap);
+            }
+        }
+        return selected.isEmpty() ? new RoaringBitmap() : FastAggregation.or(selected.iterator());
+    }
+
+    private RoaringBitmap yearRange(Integer yearFrom, Integer yearTo) {
+        if (yearFrom == null && yearTo == null) {
+            return null;
+        }
+        int from = yearFrom == null ? Integer.MIN_VALUE : yearFrom;
+        int to = yearTo == null ? Integer.MAX_VALUE : yearTo;
+        if (from > to) {
+            return new RoaringBitmap();
+        }
+        Collection<RoaringBitmap> selected = byYear.subMap(from, true, to, true).values();
+        return selected.isEmpty() ? new RoaringBitmap() : FastAggregation.or(selected.iterator());
+    }
+
+    private RoaringBitmap intersect(RoaringBitmap... filters) {
+        RoaringBitmap result = null;
+        for (RoaringBitmap filter : filters) {
+            if (filter != null) {
+                result = result == null ? filter : RoaringBitmap.and(result, filter);
+            }
+        }
+        return result == null ? allFilms : result;
+    }
+
+    private static Map<Integer, Integer> count(Map<Integer, RoaringBitmap> bitmaps, RoaringBitmap scope) {
+        Map<Integer, Integer> counts = new TreeMap<>();
+        bitmaps.forEach((value, bitmap) -> {
+            int count = RoaringBitmap.andCardinality(scope, bitmap);
+            if (count > 0) {
+                counts.put(value, count);
+            }
+        });
+        return counts;
+    }
+
+    private static void removeFrom(Map<Integer, RoaringBitmap> bitmaps, int value, int filmId) {
+        RoaringBitmap bitmap = value == NO_VALUE ? null : bitmaps.get(value);
+        if (bitmap != null) {
+            bitmap.remove(filmId);
+            if (bitmap.isEmpty()) {
+                bitmaps.remove(value);
+            }
+        }
+    }
+
+    @lombok.Value
+    private static class FilmFacets {
+        int[] genreIds;
+
+        int mpaId;
+
+        int year;
+    }
+}
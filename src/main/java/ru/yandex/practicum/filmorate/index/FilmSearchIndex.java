@@ -0,0 +1,276 @@
+package ru.yandex.practicum.filmorate.index;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.storage.event.FilmEvent;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Инвертированный индекс по названию и описанию фильмов. Для каждого терма хранится список
+ * (id фильма, вес) по возрастанию id; вес слова из названия в NAME_WEIGHT раз больше, чем из
+ * описания. Термы лежат в отсортированном словаре, поэтому последнее слово запроса ищется
+ * по префиксу диапазоном словаря. Текст приводится к нижнему регистру без учёта локали,
+ * «ё» заменяется на «е», словом считается последовательность букв и цифр любого алфавита.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(value = "filmorate.search.enabled", havingValue = "true", matchIfMissing = true)
+public class FilmSearchIndex {
+    public static final int MAX_RESULTS = 100;
+    private static final int NAME_WEIGHT = 3;
+    private static final int MAX_TERM_LENGTH = 64;
+    private static final int MAX_PREFIX_TERMS = 1000;
+    private static final double PREFIX_MATCH_FACTOR = 0.5;
+
+    private final FilmStorage filmStorage;
+    private final NavigableMap<String, Postings> postings = new TreeMap<>();
+    private final Map<Long, String[]> termsByFilm = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public FilmSearchIndex(FilmStorage filmStorage, MeterRegistry meterRegistry) {
+        this.filmStorage = filmStorage;
+        Gauge.builder("filmorate.search.index.size", this, FilmSearchIndex::getSizeInBytes)
+                .description("Оценка памяти, занятой поисковым индексом фильмов")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("filmorate.search.index.terms", this, FilmSearchIndex::getTermCount)
+                .description("Число термов в поисковом индексе фильмов")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void rebuild() {
+        lock.writeLock().lock();
+        try {
+            postings.clear();
+            termsByFilm.clear();
+            filmStorage.streamAll(this::index);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Поисковый индекс построен: {} фильмов, {} термов, {} байт",
+                termsByFilm.size(), getTermCount(), getSizeInBytes());
+    }
+
+    /**
+     * Фильмы, содержащие все слова запроса, по убыванию релевантности, затем по id.
+     * Последнее слово может быть началом слова. Релевантность — сумма весов совпавших
+     * термов, умноженных на idf терма.
+     */
+    public List<Long> search(String query, int limit) {
+        List<String> tokens = tokenize(query);
+        if (tokens.isEmpty() || limit <= 0) {
+            return Collections.emptyList();
+        }
+        Map<Long, Double> scores = null;
+        lock.readLock().lock();
+        try {
+            int filmCount = termsByFilm.size();
+            for (int i = 0; i < tokens.size() && (scores == null || !scores.isEmpty()); i++) {
+                String token = tokens.get(i);
+                Map<Long, Double> tokenScores = new HashMap<>();
+                Postings exact = postings.get(token);
+                if (exact != null) {
+                    exact.addScores(tokenScores, idf(filmCount, exact.size));
+                }
+                if (i == tokens.size() - 1) {
+                    int expanded = 0;
+                    for (Map.Entry<String, Postings> entry
+                            : postings.subMap(token, false, token + Character.MAX_VALUE, false).entrySet()) {
+                        if (++expanded > MAX_PREFIX_TERMS) {
+                            break;
+                        }
+                        Postings prefixed = entry.getValue();
+                        prefixed.addScores(tokenScores, idf(filmCount, prefixed.size) * PREFIX_MATCH_FACTOR);
+                    }
+                }
+                if (scores == null) {
+                    scores = tokenScores;
+                } else {
+                    Map<Long, Double> previous = scores;
+                    scores = new HashMap<>();
+                    for (Map.Entry<Long, Double> entry : previous.entrySet()) {
+                        Double score = tokenScores.get(entry.getKey());
+                        if (score != null) {
+                            scores.put(entry.getKey(), entry.getValue() + score);
+                        }
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        List<Map.Entry<Long, Double>> ranked = new ArrayList<>(scores.entrySet());
+        ranked.sort(Map.Entry.<Long, Double>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()));
+        List<Long> filmIds = new ArrayList<>(Math.min(limit, ranked.size()));
+        for (int i = 0; i < ranked.size() && i < limit; i++) {
+            filmIds.add(ranked.get(i).getKey());
+        }
+        return filmIds;
+    }
+
+    public int getTermCount() {
+        lock.readLock().lock();
+        try {
+            return postings.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Приблизительный объём индекса: строки термов, массивы списков, узлы словаря и прямой индекс
+     * фильм → термы, по которому снимаются старые записи при обновлении.
+     */
+    public long getSizeInBytes() {
+        lock.readLock().lock();
+        try {
+            long bytes = 0;
+            for (Map.Entry<String, Postings> entry : postings.entrySet()) {
+                bytes += 40 + 24 + 2L * entry.getKey().length();
+                bytes += 32 + 16 + 8L * entry.getValue().filmIds.length + 16 + 4L * entry.getValue().weights.length;
+            }
+            for (String[] terms : termsByFilm.values()) {
+                bytes += 32 + 16 + 16 + 4L * terms.length;
+            }
+            return bytes;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onFilm(FilmEvent event) {
+        lock.writeLock().lock();
+        try {
+            switch (event.getType()) {
+                case ADDED:
+                case UPDATED:
+                    if (event.getFilm() != null) {
+                        unindex(event.getFilmId());
+                        index(event.getFilm());
+                    }
+                    break;
+                case DELETED:
+                    unindex(event.getFilmId());
+                    break;
+                default:
+                    break;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public static List<String> tokenize(String text) {
+        if (text == null || text.isEmpty()) {
+            return Collections.emptyList();
+        }
+        String normalized = text.toLowerCase(Locale.ROOT).replace('ё', 'е');
+        List<String> tokens = new ArrayList<>();
+        int start = -1;
+        for (int i = 0; i <= normalized.length(); i++) {
+            boolean wordChar = i < normalized.length() && Character.isLetterOrDigit(normalized.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                tokens.add(normalized.substring(start, Math.min(i, start + MAX_TERM_LENGTH)));
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+
+    private void index(Film film) {
+        Map<String, Integer> weights = new LinkedHashMap<>();
+        tokenize(film.getName()).forEach(term -> weights.merge(term, NAME_WEIGHT, Integer::sum));
+        tokenize(film.getDescription()).forEach(term -> weights.merge(term, 1, Integer::sum));
+        String[] terms = new String[weights.size()];
+        int i = 0;
+        for (Map.Entry<String, Integer> entry : weights.entrySet()) {
+            Postings termPostings = postings.computeIfAbsent(entry.getKey(), term -> new Postings());
+            termPostings.put(film.getId(), entry.getValue());
+            // Ссылка на строку из словаря, чтобы не держать копию терма на каждый фильм.
+            terms[i++] = postings.ceilingKey(entry.getKey());
+        }
+        termsByFilm.put(film.getId(), terms);
+    }
+
+    private void unindex(Long filmId) {
+        String[] terms = termsByFilm.remove(filmId);
+        if (terms == null) {
+            return;
+        }
+        for (String term : terms) {
+            Postings termPostings = postings.get(term);
+            if (termPostings != null && termPostings.remove(filmId) && termPostings.size == 0) {
+                postings.remove(term);
+            }
+        }
+    }
+
+    private static double idf(int filmCount, int documentFrequency) {
+        return Math.log(1 + (filmCount - documentFrequency + 0.5) / (documentFrequency + 0.5));
+    }
+
+    private static final class Postings {
+        private long[] filmIds = new long[2];
+        private int[] weights = new int[2];
+        private int size;
+
+        void put(long filmId, int weight) {
+            int position = Arrays.binarySearch(filmIds, 0, size, filmId);
+            if (position >= 0) {
+                weights[position] = weight;
+                return;
+            }
+            int insertAt = -position - 1;
+            if (size == filmIds.length) {
+                filmIds = Arrays.copyOf(filmIds, size * 2);
+                weights = Arrays.copyOf(weights, size * 2);
+            }
+            System.arraycopy(filmIds, insertAt, filmIds, insertAt + 1, size - insertAt);
+            System.arraycopy(weights, insertAt, weights, insertAt + 1, size - insertAt);
+            filmIds[insertAt] = filmId;
+            weights[insertAt] = weight;
+            size++;
+        }
+
+        boolean remove(long filmId) {
+            int position = Arrays.binarySearch(filmIds, 0, size, filmId);
+            if (position < 0) {
+                return false;
+            }
+            System.arraycopy(filmIds, position + 1, filmIds, position, size - position - 1);
+            System.arraycopy(weights, position + 1, weights, position, size - position - 1);
+            size--;
+            return true;
+        }
+
+        void addScores(Map<Long, Double> scores, double idf) {
+            for (int i = 0; i < size; i++) {
+                scores.merge(filmIds[i], weights[i] * idf, Double::sum);
+            }
+        }
+    }
+}
@@ -0,0 +1,245 @@
+package ru.yandex.practicum.filmorate.index;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.yandex.practicum.filmorate.storage.event.FriendshipEvent;
+import ru.yandex.practicum.filmorate.storage.user.UserStorage;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Граф дружбы в памяти: для каждого пользователя хранится отсортированный массив id друзей.
+ * Массивы не изменяются после публикации, изменение списка одного пользователя создаёт новую копию
+ * внутри compute, поэтому читатели работают без блокировок. Связь занимает 8 байт против
+ * нескольких десятков у упакованного Long в множестве. Возвращаемые массивы изменять нельзя.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(value = "filmorate.friend-graph.enabled", havingValue = "true", matchIfMissing = true)
+public class FriendGraph {
+    private static final long[] NO_FRIENDS = new long[0];
+    private static final int MIN_CHUNK_SIZE = 128;
+    private static final int MAX_PRESIZED_CANDIDATES = 1 << 20;
+    private static final Comparator<Suggestion> SUGGESTION_ORDER = Comparator
+            .comparingInt(Suggestion::getMutualFriends).reversed()
+            .thenComparingLong(Suggestion::getUserId);
+
+    private final UserStorage userStorage;
+    private final Map<Long, long[]> adjacency = new ConcurrentHashMap<>();
+
+    @Value("${filmorate.friend-graph.parallel-threshold:1024}")
+    private int parallelThreshold;
+
+    @PostConstruct
+    public void rebuild() {
+        adjacency.clear();
+        long[] current = {0L};
+        long[][] buffer = {new long[16]};
+        int[] size = {0};
+        userStorage.streamFriendships(friendship -> {
+            long userId = friendship.getUserId();
+            if (size[0] > 0 && current[0] != userId) {
+                merge(current[0], Arrays.copyOf(buffer[0], size[0]));
+                size[0] = 0;
+            }
+            current[0] = userId;
+            if (size[0] == buffer[0].length) {
+                buffer[0] = Arrays.copyOf(buffer[0], size[0] * 2);
+            }
+            buffer[0][size[0]++] = friendship.getFriendId();
+        });
+        if (size[0] > 0) {
+            merge(current[0], Arrays.copyOf(buffer[0], size[0]));
+        }
+        log.info("Граф друзей построен: {} пользователей, {} связей", adjacency.size(), getEdgeCount());
+    }
+
+    public long[] getFriends(long userId) {
+        return adjacency.getOrDefault(userId, NO_FRIENDS);
+    }
+
+    public int getDegree(long userId) {
+        return getFriends(userId).length;
+    }
+
+    public long getEdgeCount() {
+        return adjacency.values().stream().mapToLong(friends -> friends.length).sum();
+    }
+
+    public long[] getCommonFriends(long... userIds) {
+        if (userIds.length == 0) {
+            return NO_FRIENDS;
+        }
+        long[][] lists = new long[userIds.length][];
+        for (int i = 0; i < userIds.length; i++) {
+            lists[i] = getFriends(userIds[i]);
+        }
+        Arrays.sort(lists, Comparator.comparingInt(friends -> friends.length));
+        long[] common = lists[0];
+        for (int i = 1; i < lists.length && common.length > 0; i++) {
+            common = intersect(common, lists[i]);
+        }
+        return common;
+    }
+
+    /**
+     * Друзья друзей, ранжированные по числу общих друзей, затем по id. Для пользователей
+     * со степенью не меньше parallel-threshold друзья делятся на части, которые считаются
+     * параллельно в собственных счётчиках и затем складываются.
+     */
+    public List<Suggestion> getSuggestions(long userId, int limit) {
+        long[] friends = getFriends(userId);
+        if (friends.length == 0 || limit <= 0) {
+            return Collections.emptyList();
+        }
+        LongIntHashMap mutualCounts;
+        if (parallelThreshold > 0 && friends.length >= parallelThreshold
+                && ForkJoinPool.getCommonPoolParallelism() > 1) {
+            int chunks = Math.min(ForkJoinPool.getCommonPoolParallelism() * 4, friends.length / MIN_CHUNK_SIZE + 1);
+            int chunkSize = (friends.length + chunks - 1) / chunks;
+            mutualCounts = IntStream.range(0, chunks)
+                    .parallel()
+                    .mapToObj(chunk -> countFriendsOfFriends(friends, chunk * chunkSize,
+                            Math.min(friends.length, (chunk + 1) * chunkSize)))
+                    .reduce(LongIntHashMap::addAll)
+                    .orElseGet(() -> new LongIntHashMap(0));
+        } else {
+            mutualCounts = countFriendsOfFriends(friends, 0, friends.length);
+        }
+
+        PriorityQueue<Suggestion> top = new PriorityQueue<>(limit + 1, SUGGESTION_ORDER.reversed());
+        mutualCounts.forEach((candidateId, mutualFriends) -> {
+            if (top.size() == limit && mutualFriends < top.peek().getMutualFriends()
+                    || candidateId == userId || Arrays.binarySearch(friends, candidateId) >= 0) {
+                return;
+            }
+            Suggestion suggestion = new Suggestion(candidateId, mutualFriends);
+            if (top.size() < limit) {
+                top.add(suggestion);
+            } else if (SUGGESTION_ORDER.compare(suggestion, top.peek()) < 0) {
+                top.poll();
+                top.add(suggestion);
+            }
+        });
+        List<Suggestion> suggestions = new ArrayList<>(top);
+        suggestions.sort(SUGGESTION_ORDER);
+        return suggestions;
+    }
+
+    public static long[] intersect(long[] first, long[] second) {
+        long[] result = new long[Math.min(first.length, second.length)];
+        int size = 0;
+        int i = 0;
+        int j = 0;
+        while (i < first.length && j < second.length) {
+            if (first[i] < second[j]) {
+                i++;
+            } else if (first[i] > second[j]) {
+                j++;
+            } else {
+                result[size++] = first[i];
+                i++;
+                j++;
+            }
+        }
+        return size == result.length ? result : Arrays.copyOf(result, size);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onFriendship(FriendshipEvent event) {
+        switch (event.getType()) {
+            case ADDED:
+                adjacency.compute(event.getUserId(), (userId, friends) -> insert(friends, event.getFriendId()));
+                break;
+            case REMOVED:
+                adjacency.computeIfPresent(event.getUserId(), (userId, friends) -> remove(friends, event.getFriendId()));
+                break;
+            case USER_DELETED:
+                adjacency.remove(event.getUserId());
+                adjacency.keySet().forEach(userId -> adjacency.computeIfPresent(userId,
+                        (id, friends) -> remove(friends, event.getUserId())));
+                break;
+            default:
+                break;
+        }
+    }
+
+    private LongIntHashMap countFriendsOfFriends(long[] friends, int from, int to) {
+        long[][] friendsOfFriends = new long[Math.max(0, to - from)][];
+        int expectedSize = 0;
+        for (int i = from; i < to; i++) {
+            friendsOfFriends[i - from] = getFriends(friends[i]);
+            expectedSize += friendsOfFriends[i - from].length;
+        }
+        LongIntHashMap counts = new LongIntHashMap(Math.min(expectedSize, MAX_PRESIZED_CANDIDATES));
+        for (long[] candidates : friendsOfFriends) {
+            for (long candidateId : candidates) {
+                counts.addTo(candidateId, 1);
+            }
+        }
+        return counts;
+    }
+
+    private void merge(long userId, long[] friends) {
+        Arrays.sort(friends);
+        adjacency.merge(userId, friends, (existing, added) -> {
+            long[] merged = existing;
+            for (long friendId : added) {
+                merged = insert(merged, friendId);
+            }
+            return merged;
+        });
+    }
+
+    private static long[] insert(long[] friends, long friendId) {
+        if (friends == null) {
+            return new long[]{friendId};
+        }
+        int position = Arrays.binarySearch(friends, friendId);
+        if (position >= 0) {
+            return friends;
+        }
+        int insertAt = -position - 1;
+        long[] updated = new long[friends.length + 1];
+        System.arraycopy(friends, 0, updated, 0, insertAt);
+        updated[insertAt] = friendId;
+        System.arraycopy(friends, insertAt, updated, insertAt + 1, friends.length - insertAt);
+        return updated;
+    }
+
+    private static long[] remove(long[] friends, long friendId) {
+        int position = Arrays.binarySearch(friends, friendId);
+        if (position < 0) {
+            return friends;
+        }
+        if (friends.length == 1) {
+            return null;
+        }
+        long[] updated = new long[friends.length - 1];
+        System.arraycopy(friends, 0, updated, 0, position);
+        System.arraycopy(friends, position + 1, updated, position, friends.length - position - 1);
+        return updated;
+    }
+
+    @lombok.Value
+    public static class Suggestion {
+        long userId;
+
+        int mutualFriends;
+    }
+}
@@ -0,0 +1,198 @@
+package ru.yandex.practicum.filmorate.index;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.roaringbitmap.FastAggregation;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.yandex.practicum.filmorate.storage.event.FilmEvent;
+import ru.yandex.practicum.filmorate.storage.event.LikeEvent;
+import ru.yandex.practicum.filmorate.storage.likes.LikesStorage;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Лайки в виде сжатых битовых карт: фильмы каждого пользователя и пользователи каждого фильма.
+ * Карты не изменяются после публикации, событие лайка заменяет карту копией, поэтому расчёт
+ * рекомендаций идёт без блокировок. Результат кэшируется вместе с картой пользователя, по которой
+ * он посчитан, и перестаёт использоваться, как только лайки пользователя изменились. Кэш ограничен
+ * cache-size пользователями, при переполнении Caffeine вытесняет редко запрашиваемые записи.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(value = "filmorate.recommendations.enabled", havingValue = "true", matchIfMissing = true)
+public class LikeBitmapIndex {
+    public static final int MAX_RECOMMENDATIONS = 100;
+
+    private final LikesStorage likesStorage;
+    private final Map<Integer, RoaringBitmap> filmsByUser = new ConcurrentHashMap<>();
+    private final Map<Integer, RoaringBitmap> usersByFilm = new ConcurrentHashMap<>();
+    private volatile Cache<Integer, CachedRecommendations> cache;
+
+    @Value("${filmorate.recommendations.neighbours:50}")
+    private int neighbours = 50;
+    @Value("${filmorate.recommendations.parallel-threshold:2048}")
+    private int parallelThreshold = 2048;
+    @Value("${filmorate.recommendations.cache-size:10000}")
+    private int cacheSize = 10000;
+
+    @PostConstruct
+    public void rebuild() {
+        Map<Integer, RoaringBitmap> films = new HashMap<>();
+        Map<Integer, RoaringBitmap> users = new HashMap<>();
+        likesStorage.streamLikes(like -> {
+            int filmId = BitmapIds.toBitmapId(like.getFilmId());
+            int userId = BitmapIds.toBitmapId(like.getUserId());
+            if (filmId > 0 && userId > 0) {
+                films.computeIfAbsent(userId, id -> new RoaringBitmap()).add(filmId);
+                users.computeIfAbsent(filmId, id -> new RoaringBitmap()).add(userId);
+            }
+        });
+        films.values().forEach(RoaringBitmap::runOptimize);
+        users.values().forEach(RoaringBitmap::runOptimize);
+        filmsByUser.clear();
+        usersByFilm.clear();
+        cache = Caffeine.newBuilder().maximumSize(cacheSize).build();
+        filmsByUser.putAll(films);
+        usersByFilm.putAll(users);
+        log.info("Индекс лайков построен: {} пользователей, {} фильмов, {} байт",
+                filmsByUser.size(), usersByFilm.size(), getSizeInBytes());
+    }
+
+    public List<Long> getRecommendations(Long userId, int limit) {
+        int id = BitmapIds.toBitmapId(userId);
+        RoaringBitmap liked = id > 0 ? filmsByUser.get(id) : null;
+        if (liked == null || limit <= 0) {
+            return Collections.emptyList();
+        }
+        CachedRecommendations cached = cache.getIfPresent(id);
+        if (cached == null || cached.getSource() != liked) {
+            cached = new CachedRecommendations(liked, rank(id, liked));
+            cache.put(id, cached);
+        }
+        int[] filmIds = cached.getFilmIds();
+        List<Long> recommendations = new ArrayList<>(Math.min(limit, filmIds.length));
+        for (int i = 0; i < filmIds.length && i < limit; i++) {
+            recommendations.add((long) filmIds[i]);
+        }
+        return recommendations;
+    }
+
+    public long getSizeInBytes() {
+        return filmsByUser.values().stream().mapToLong(RoaringBitmap::getLongSizeInBytes).sum()
+                + usersByFilm.values().stream().mapToLong(RoaringBitmap::getLongSizeInBytes).sum();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onLike(LikeEvent event) {
+        int filmId = BitmapIds.toBitmapId(event.getFilmId());
+        int userId = BitmapIds.toBitmapId(event.getUserId());
+        if (filmId <= 0 || userId <= 0) {
+            return;
+        }
+        filmsByUser.compute(userId, (id, films) -> withChange(films, filmId, event.isLiked()));
+        usersByFilm.compute(filmId, (id, users) -> withChange(users, userId, event.isLiked()));
+        cache.invalidate(userId);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onFilm(FilmEvent event) {
+        int filmId = BitmapIds.toBitmapId(event.getFilmId());
+        if (event.getType() != FilmEvent.Type.DELETED || filmId <= 0) {
+            return;
+        }
+        RoaringBitmap users = usersByFilm.remove(filmId);
+        if (users != null) {
+            users.forEach((int userId) ->
+                    filmsByUser.computeIfPresent(userId, (id, films) -> withChange(films, filmId, false)));
+        }
+        // Удалённый фильм мог попасть в рекомендации любого пользователя, удаления редки.
+        cache.invalidateAll();
+    }
+
+    private int[] rank(int userId, RoaringBitmap liked) {
+        List<RoaringBitmap> likers = new ArrayList<>(liked.getCardinality());
+        liked.forEach((int filmId) -> {
+            RoaringBitmap users = usersByFilm.get(filmId);
+            if (users != null) {
+                likers.add(users);
+            }
+        });
+        RoaringBitmap candidates = FastAggregation.or(likers.iterator());
+        candidates.remove(userId);
+        int[] candidateIds = candidates.toArray();
+        if (candidateIds.length == 0) {
+            return new int[0];
+        }
+
+        long[] similarities = new long[candidateIds.length];
+        IntStream indexes = IntStream.range(0, candidateIds.length);
+        if (candidateIds.length >= parallelThreshold && ForkJoinPool.getCommonPoolParallelism() > 1) {
+            indexes = indexes.parallel();
+        }
+        indexes.forEach(i -> {
+            RoaringBitmap films = filmsByUser.get(candidateIds[i]);
+            int overlap = films == null ? 0 : RoaringBitmap.andCardinality(liked, films);
+            similarities[i] = (long) overlap << 32 | (Integer.MAX_VALUE - candidateIds[i]);
+        });
+        Arrays.sort(similarities);
+
+        LongIntHashMap scores = new LongIntHashMap(MAX_RECOMMENDATIONS * 4);
+        for (int i = similarities.length - 1; i >= 0 && i >= similarities.length - neighbours; i--) {
+            int overlap = (int) (similarities[i] >>> 32);
+            RoaringBitmap films = filmsByUser.get(Integer.MAX_VALUE - (int) similarities[i]);
+            if (overlap == 0 || films == null) {
+                break;
+            }
+            RoaringBitmap.andNot(films, liked).forEach((int filmId) -> scores.addTo(filmId, overlap));
+        }
+
+        long[] ranked = new long[scores.size()];
+        int[] size = {0};
+        scores.forEach((filmId, score) -> ranked[size[0]++] = (long) score << 32 | (Integer.MAX_VALUE - filmId));
+        Arrays.sort(ranked);
+        int[] filmIds = new int[Math.min(ranked.length, MAX_RECOMMENDATIONS)];
+        for (int i = 0; i < filmIds.length; i++) {
+            filmIds[i] = Integer.MAX_VALUE - (int) ranked[ranked.length - 1 - i];
+        }
+        return filmIds;
+    }
+
+    private static RoaringBitmap withChange(RoaringBitmap bitmap, int id, boolean add) {
+        if (bitmap == null) {
+            return add ? RoaringBitmap.bitmapOf(id) : null;
+        }
+        if (bitmap.contains(id) == add) {
+            return bitmap;
+        }
+        RoaringBitmap changed = bitmap.clone();
+        if (add) {
+            changed.add(id);
+        } else {
+            changed.remove(id);
+        }
+        return changed.isEmpty() ? null : changed;
+    }
+
+    @lombok.Value
+    private static class CachedRecommendations {
+        RoaringBitmap source;
+
+        int[] filmIds;
+    }
+}
@@ -0,0 +1,113 @@
+package ru.yandex.practicum.filmorate.index;
+
+import lombok.RequiredArgsConstructor;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.yandex.practicum.filmorate.storage.event.FilmEvent;
+import ru.yandex.practicum.filmorate.storage.event.LikeEvent;
+import ru.yandex.practicum.filmorate.storage.likes.LikesStorage;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * Рейтинг фильмов по числу лайков, который живёт в памяти и обновляется событиями хранилища.
+ * Изменения по одному фильму сериализуются через compute, поэтому одновременные лайки не теряются;
+ * новая позиция добавляется раньше удаления старой, и читатель может на мгновение увидеть фильм дважды.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(value = "filmorate.popularity-index.enabled", havingValue = "true", matchIfMissing = true)
+public class PopularityIndex {
+    private static final Comparator<Entry> RANKING_ORDER = Comparator.comparingLong(Entry::getScore).reversed()
+            .thenComparingLong(Entry::getFilmId);
+
+    private final LikesStorage likesStorage;
+    private final Map<Long, Entry> entries = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListSet<Entry> ranking = new ConcurrentSkipListSet<>(RANKING_ORDER);
+
+    @PostConstruct
+    public void rebuild() {
+        entries.clear();
+        ranking.clear();
+        likesStorage.getLikeCounts().forEach((filmId, likes) -> adjust(filmId, likes));
+        log.info("Рейтинг популярности построен для {} фильмов", entries.size());
+    }
+
+    public List<Long> getTop(int count) {
+        if (count <= 0) {
+            return new ArrayList<>();
+        }
+        List<Long> top = new ArrayList<>(Math.min(count, entries.size()));
+        Set<Long> seen = new HashSet<>();
+        for (Entry entry : ranking) {
+            if (top.size() >= count) {
+                break;
+            }
+            if (seen.add(entry.getFilmId())) {
+                top.add(entry.getFilmId());
+            }
+        }
+        return top;
+    }
+
+    public long getScore(Long filmId) {
+        Entry entry = entries.get(filmId);
+        return entry == null ? 0 : entry.getScore();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onLike(LikeEvent event) {
+        adjust(event.getFilmId(), event.isLiked() ? 1 : -1);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onFilm(FilmEvent event) {
+        switch (event.getType()) {
+            case ADDED:
+                adjust(event.getFilmId(), 0);
+                break;
+            case DELETED:
+                entries.computeIfPresent(event.getFilmId(), (filmId, current) -> {
+                    ranking.remove(current);
+                    return null;
+                });
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void adjust(Long filmId, long delta) {
+        entries.compute(filmId, (id, current) -> {
+            long score = current == null ? delta : current.getScore() + delta;
+            Entry updated = new Entry(score, id);
+            if (current != null && current.equals(updated)) {
+                return current;
+            }
+            ranking.add(updated);
+            if (current != null) {
+                ranking.remove(current);
+            }
+            return updated;
+        });
+    }
+
+    @Value
+    private static class Entry {
+        long score;
+
+        long filmId;
+    }
+}
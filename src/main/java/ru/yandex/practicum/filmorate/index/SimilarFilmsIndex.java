@@ -0,0 +1,233 @@
+package ru.yandex.practicum.filmorate.index;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.roaringbitmap.FastAggregation;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.storage.likes.LikesStorage;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Похожие фильмы по мере Жаккара на множествах лайкнувших пользователей. Фоновая задача раз в
+ * refresh-interval-ms или по запросу строит битовые карты по всей таблице лайков, считает top-K для
+ * каждого фильма через fork/join и атомарно подменяет неизменяемый снимок. Читатели работают
+ * со снимком без блокировок; до первого расчёта снимок пуст.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(value = "filmorate.similar-films.enabled", havingValue = "true", matchIfMissing = true)
+public class SimilarFilmsIndex {
+    private static final int FILMS_PER_TASK = 32;
+    private static final long[] NO_FILMS = new long[0];
+
+    private final LikesStorage likesStorage;
+    private final int topK;
+    private final long refreshIntervalMs;
+    private final AtomicReference<Snapshot> snapshot =
+            new AtomicReference<>(new Snapshot(Collections.emptyMap(), null, 0));
+    private final AtomicBoolean recomputeQueued = new AtomicBoolean();
+    private final Timer successTimer;
+    private final Timer failureTimer;
+    private final ScheduledExecutorService scheduler;
+
+    public SimilarFilmsIndex(LikesStorage likesStorage,
+                             MeterRegistry meterRegistry,
+                             @Value("${filmorate.similar-films.top-k:20}") int topK,
+                             @Value("${filmorate.similar-films.refresh-interval-ms:600000}") long refreshIntervalMs) {
+        this.likesStorage = likesStorage;
+        this.topK = topK;
+        this.refreshIntervalMs = refreshIntervalMs;
+        this.successTimer = jobTimer(meterRegistry, "success");
+        this.failureTimer = jobTimer(meterRegistry, "failure");
+        Gauge.builder("filmorate.similar.films.size", snapshot, current -> current.get().getSimilarFilms().size())
+                .description("Число фильмов в текущем снимке похожих фильмов")
+                .register(meterRegistry);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "similar-films");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PostConstruct
+    public void start() {
+        if (refreshIntervalMs > 0) {
+            scheduler.scheduleWithFixedDelay(this::recomputeQuietly, 0, refreshIntervalMs, TimeUnit.MILLISECONDS);
+        } else {
+            requestRecompute();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * Ставит пересчёт в очередь фонового потока. Повторные запросы, пришедшие до начала
+     * уже запрошенного пересчёта, с ним схлопываются.
+     */
+    public void requestRecompute() {
+        if (recomputeQueued.compareAndSet(false, true)) {
+            scheduler.execute(() -> {
+                recomputeQueued.set(false);
+                recomputeQuietly();
+            });
+        }
+    }
+
+    public List<Long> getSimilar(Long filmId, int limit) {
+        long[] similar = snapshot.get().getSimilarFilms().getOrDefault(filmId, NO_FILMS);
+        List<Long> result = new ArrayList<>(Math.min(limit, similar.length));
+        for (int i = 0; i < similar.length && i < limit; i++) {
+            result.add(similar[i]);
+        }
+        return result;
+    }
+
+    public Snapshot getSnapshot() {
+        return snapshot.get();
+    }
+
+    public void recompute() {
+        long started = System.nanoTime();
+        Timer timer = failureTimer;
+        try {
+            Map<Integer, RoaringBitmap> usersByFilm = new HashMap<>();
+            Map<Integer, RoaringBitmap> filmsByUser = new HashMap<>();
+            likesStorage.streamLikes(like -> {
+                int filmId = BitmapIds.toBitmapId(like.getFilmId());
+                int userId = BitmapIds.toBitmapId(like.getUserId());
+                if (filmId > 0 && userId > 0) {
+                    usersByFilm.computeIfAbsent(filmId, id -> new RoaringBitmap()).add(userId);
+                    filmsByUser.computeIfAbsent(userId, id -> new RoaringBitmap()).add(filmId);
+                }
+            });
+            usersByFilm.values().forEach(RoaringBitmap::runOptimize);
+            filmsByUser.values().forEach(RoaringBitmap::runOptimize);
+
+            int[] filmIds = usersByFilm.keySet().stream().mapToInt(Integer::intValue).sorted().toArray();
+            long[][] similar = new long[filmIds.length][];
+            ForkJoinPool.commonPool().invoke(new SimilarityTask(filmIds, similar, usersByFilm, filmsByUser,
+                    0, filmIds.length));
+
+            Map<Long, long[]> similarFilms = new HashMap<>();
+            for (int i = 0; i < filmIds.length; i++) {
+                if (similar[i].length > 0) {
+                    similarFilms.put((long) filmIds[i], similar[i]);
+                }
+            }
+            long durationMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+            snapshot.set(new Snapshot(Collections.unmodifiableMap(similarFilms), Instant.now(), durationMs));
+            timer = successTimer;
+            log.info("Похожие фильмы пересчитаны: {} фильмов за {} мс", similarFilms.size(), durationMs);
+        } finally {
+            timer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private void recomputeQuietly() {
+        try {
+            recompute();
+        } catch (RuntimeException e) {
+            log.error("Не удалось пересчитать похожие фильмы, остаётся предыдущий снимок", e);
+        }
+    }
+
+    private long[] topSimilar(int filmId, RoaringBitmap likers, Map<Integer, RoaringBitmap> usersByFilm,
+                              Map<Integer, RoaringBitmap> filmsByUser) {
+        List<RoaringBitmap> likedByLikers = new ArrayList<>(likers.getCardinality());
+        likers.forEach((int userId) -> likedByLikers.add(filmsByUser.get(userId)));
+        RoaringBitmap candidates = FastAggregation.or(likedByLikers.iterator());
+        candidates.remove(filmId);
+        if (candidates.isEmpty()) {
+            return NO_FILMS;
+        }
+
+        long[] scores = new long[candidates.getCardinality()];
+        int[] size = {0};
+        int likersCount = likers.getCardinality();
+        candidates.forEach((int candidateId) -> {
+            RoaringBitmap candidateLikers = usersByFilm.get(candidateId);
+            int common = RoaringBitmap.andCardinality(likers, candidateLikers);
+            float jaccard = (float) common / (likersCount + candidateLikers.getCardinality() - common);
+            // Биты неотрицательного float упорядочены как сами значения, при равенстве выше меньший id.
+            scores[size[0]++] = (long) Float.floatToIntBits(jaccard) << 32 | (Integer.MAX_VALUE - candidateId);
+        });
+        Arrays.sort(scores);
+        long[] top = new long[Math.min(topK, scores.length)];
+        for (int i = 0; i < top.length; i++) {
+            top[i] = Integer.MAX_VALUE - (int) scores[scores.length - 1 - i];
+        }
+        return top;
+    }
+
+    private static Timer jobTimer(MeterRegistry meterRegistry, String outcome) {
+        return Timer.builder("filmorate.similar.films.job")
+                .description("Длительность пересчёта похожих фильмов")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    private class SimilarityTask extends RecursiveAction {
+        private final int[] filmIds;
+        private final long[][] similar;
+        private final Map<Integer, RoaringBitmap> usersByFilm;
+        private final Map<Integer, RoaringBitmap> filmsByUser;
+        private final int from;
+        private final int to;
+
+        SimilarityTask(int[] filmIds, long[][] similar, Map<Integer, RoaringBitmap> usersByFilm,
+                       Map<Integer, RoaringBitmap> filmsByUser, int from, int to) {
+            this.filmIds = filmIds;
+            this.similar = similar;
+            this.usersByFilm = usersByFilm;
+            this.filmsByUser = filmsByUser;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= FILMS_PER_TASK) {
+                for (int i = from; i < to; i++) {
+                    similar[i] = topSimilar(filmIds[i], usersByFilm.get(filmIds[i]), usersByFilm, filmsByUser);
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new SimilarityTask(filmIds, similar, usersByFilm, filmsByUser, from, middle),
+                    new SimilarityTask(filmIds, similar, usersByFilm, filmsByUser, middle, to));
+        }
+    }
+
+    @lombok.Value
+    public static class Snapshot {
+        Map<Long, long[]> similarFilms;
+
+        Instant computedAt;
+
+        long durationMs;
+    }
+}
@@ -0,0 +1,92 @@
+package ru.yandex.practicum.filmorate.metrics;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Обёртка над пулом соединений, которая считает выполненные SQL-запросы: вызовы execute*
+ * и executeBatch у всех Statement, созданных через выданные соединения. Пакет считается
+ * одним запросом, потому что уходит в БД за один обмен. Счёт ведётся в общий счётчик
+ * и в {@link RequestQueryStats} текущего HTTP-запроса, если он есть; для него же замеряется
+ * время выполнения и запоминается текст запроса.
+ */
+public class QueryCountingDataSource extends DelegatingDataSource {
+    private static final Set<String> STATEMENT_FACTORIES = Set.of("createStatement", "prepareStatement", "prepareCall");
+    private static final Set<String> EXECUTE_METHODS = Set.of("execute", "executeQuery", "executeUpdate",
+            "executeLargeUpdate", "executeBatch", "executeLargeBatch");
+
+    private final LongAdder statements = new LongAdder();
+
+    public QueryCountingDataSource(DataSource targetDataSource) {
+        super(targetDataSource);
+    }
+
+    public long getStatementCount() {
+        return statements.sum();
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return wrap(super.getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return wrap(super.getConnection(username, password));
+    }
+
+    private Connection wrap(Connection connection) {
+        return proxy(Connection.class, connection, (proxy, method, args) -> {
+            Object result = invoke(connection, method, args);
+            if (result instanceof Statement && STATEMENT_FACTORIES.contains(method.getName())) {
+                String sql = args != null && args.length > 0 && args[0] instanceof String ? (String) args[0] : null;
+                return wrap(method.getReturnType(), (Statement) result, sql);
+            }
+            return result;
+        });
+    }
+
+    private Object wrap(Class<?> type, Statement statement, String preparedSql) {
+        return proxy(type, statement, (proxy, method, args) -> {
+            if (!EXECUTE_METHODS.contains(method.getName())) {
+                return invoke(statement, method, args);
+            }
+            statements.increment();
+            RequestQueryStats stats = RequestQueryStats.current();
+            if (stats == null) {
+                return invoke(statement, method, args);
+            }
+            String sql = preparedSql != null ? preparedSql
+                    : args != null && args.length > 0 && args[0] instanceof String ? (String) args[0] : null;
+            long started = System.nanoTime();
+            try {
+                return invoke(statement, method, args);
+            } finally {
+                stats.recordStatement(sql, System.nanoTime() - started);
+            }
+        });
+    }
+
+    private static <T> T proxy(Class<T> type, Object target, InvocationHandler handler) {
+        return type.cast(Proxy.newProxyInstance(QueryCountingDataSource.class.getClassLoader(),
+                new Class<?>[]{type}, handler));
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getTargetException();
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package ru.yandex.practicum.filmorate.metrics;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Оборачивает каждый бин DataSource в {@link QueryCountingDataSource} и публикует его счётчик
+ * как filmorate.jdbc.statements с именем бина в теге. Метрики пула соединений Hikari Spring Boot
+ * публикует сам: обёртка наследует DelegatingDataSource и отдаёт пул через unwrap.
+ */
+@Component
+public class QueryCountingDataSourcePostProcessor implements BeanPostProcessor, MeterBinder {
+    private final Map<String, QueryCountingDataSource> dataSources = new ConcurrentHashMap<>();
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (!(bean instanceof DataSource) || bean instanceof QueryCountingDataSource) {
+            return bean;
+        }
+        QueryCountingDataSource dataSource = new QueryCountingDataSource((DataSource) bean);
+        dataSources.put(beanName, dataSource);
+        return dataSource;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        dataSources.forEach((name, dataSource) ->
+                FunctionCounter.builder("filmorate.jdbc.statements", dataSource, QueryCountingDataSource::getStatementCount)
+                        .description("Число выполненных SQL-запросов")
+                        .tag("name", name)
+                        .register(registry));
+    }
+}
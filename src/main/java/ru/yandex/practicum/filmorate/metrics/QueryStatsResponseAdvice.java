@@ -0,0 +1,37 @@
+package ru.yandex.practicum.filmorate.metrics;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.http.server.ServletServerHttpResponse;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyAdvice;
+
+/**
+ * Заголовки с числом и временем SQL-запросов для ответов с телом: после записи тела ответ
+ * уже отправлен, и фильтр не может их добавить. Запросы, выполненные во время записи тела,
+ * в заголовок не попадают.
+ */
+@RestControllerAdvice("ru.yandex.practicum.filmorate.controller")
+@ConditionalOnProperty(value = "filmorate.query-budget.expose-headers", havingValue = "true")
+public class QueryStatsResponseAdvice implements ResponseBodyAdvice<Object> {
+
+    @Override
+    public boolean supports(MethodParameter returnType, Class<? extends HttpMessageConverter<?>> converterType) {
+        return true;
+    }
+
+    @Override
+    public Object beforeBodyWrite(Object body, MethodParameter returnType, MediaType selectedContentType,
+                                  Class<? extends HttpMessageConverter<?>> selectedConverterType,
+                                  ServerHttpRequest request, ServerHttpResponse response) {
+        RequestQueryStats stats = RequestQueryStats.current();
+        if (stats != null && response instanceof ServletServerHttpResponse) {
+            RequestQueryMetricsFilter.writeHeaders(((ServletServerHttpResponse) response).getServletResponse(), stats);
+        }
+        return body;
+    }
+}
@@ -0,0 +1,109 @@
+package ru.yandex.practicum.filmorate.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Распределение числа SQL-запросов на один HTTP-запрос, по шаблону пути, как у
+ * http.server.requests. Запросы без найденного обработчика попадают под uri UNKNOWN,
+ * чтобы произвольные пути не плодили метрики.
+ * Если запрос выполнил больше max-statements SQL-запросов или повторил одну форму запроса
+ * больше max-repeats раз (признак N+1), в лог пишется предупреждение и растёт счётчик
+ * filmorate.http.sql.budget.exceeded. При expose-headers число и время запросов
+ * отдаются в заголовках ответа.
+ */
+@Slf4j
+@Component
+public class RequestQueryMetricsFilter extends OncePerRequestFilter {
+    public static final String QUERY_COUNT_HEADER = "X-Query-Count";
+    public static final String QUERY_TIME_HEADER = "X-Query-Time-Ms";
+    private static final String UNKNOWN_URI = "UNKNOWN";
+
+    private final MeterRegistry meterRegistry;
+    private final int maxStatements;
+    private final int maxRepeats;
+    private final boolean exposeHeaders;
+
+    public RequestQueryMetricsFilter(MeterRegistry meterRegistry,
+                                     @Value("${filmorate.query-budget.max-statements:20}") int maxStatements,
+                                     @Value("${filmorate.query-budget.max-repeats:5}") int maxRepeats,
+                                     @Value("${filmorate.query-budget.expose-headers:false}") boolean exposeHeaders) {
+        this.meterRegistry = meterRegistry;
+        this.maxStatements = maxStatements;
+        this.maxRepeats = maxRepeats;
+        this.exposeHeaders = exposeHeaders;
+    }
+
+    /**
+     * Записывает число и время SQL-запросов в заголовки, пока ответ не отправлен.
+     * Вызывается перед записью тела ответа и ещё раз после обработки запроса.
+     */
+    public static void writeHeaders(HttpServletResponse response, RequestQueryStats stats) {
+        if (!response.isCommitted()) {
+            response.setHeader(QUERY_COUNT_HEADER, Integer.toString(stats.getStatements()));
+            response.setHeader(QUERY_TIME_HEADER, Long.toString(stats.getTimeMillis()));
+        }
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        RequestQueryStats stats = RequestQueryStats.start();
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            RequestQueryStats.finish();
+            if (exposeHeaders) {
+                writeHeaders(response, stats);
+            }
+            Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+            String uri = pattern == null ? UNKNOWN_URI : pattern.toString();
+            DistributionSummary.builder("filmorate.http.sql.statements")
+                    .description("Число SQL-запросов на один HTTP-запрос")
+                    .tag("method", request.getMethod())
+                    .tag("uri", uri)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry)
+                    .record(stats.getStatements());
+            checkBudget(request.getMethod(), uri, stats);
+        }
+    }
+
+    private void checkBudget(String method, String uri, RequestQueryStats stats) {
+        if (stats.getStatements() > maxStatements) {
+            log.warn("{} {} выполнил {} SQL-запросов за {} мс при бюджете {}",
+                    method, uri, stats.getStatements(), stats.getTimeMillis(), maxStatements);
+            budgetExceeded(method, uri, "statements");
+        }
+        for (Map.Entry<String, Integer> shape : stats.getShapes().entrySet()) {
+            if (shape.getValue() > maxRepeats) {
+                log.warn("{} {} повторил один SQL-запрос {} раз, возможен N+1: {}",
+                        method, uri, shape.getValue(), shape.getKey());
+                budgetExceeded(method, uri, "repeats");
+            }
+        }
+    }
+
+    private void budgetExceeded(String method, String uri, String reason) {
+        Counter.builder("filmorate.http.sql.budget.exceeded")
+                .description("HTTP-запросы, превысившие бюджет SQL-запросов")
+                .tag("method", method)
+                .tag("uri", uri)
+                .tag("reason", reason)
+                .register(meterRegistry)
+                .increment();
+    }
+}
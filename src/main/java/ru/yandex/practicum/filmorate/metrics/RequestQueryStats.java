@@ -0,0 +1,125 @@
+package ru.yandex.practicum.filmorate.metrics;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SQL-запросы текущего HTTP-запроса: число, суммарное время и число повторов каждой формы
+ * запроса. Форма — текст SQL, в котором литералы и списки параметров заменены одним «?»,
+ * поэтому запросы одного шаблона с разными значениями считаются повторами. Привязан к потоку,
+ * который обрабатывает запрос: запросы из фоновых потоков и из асинхронной отдачи ответа
+ * в него не попадают.
+ */
+public final class RequestQueryStats {
+    private static final ThreadLocal<RequestQueryStats> CURRENT = new ThreadLocal<>();
+    private static final String UNKNOWN_SHAPE = "?";
+
+    private final Map<String, Integer> shapes = new HashMap<>();
+    private int statements;
+    private long nanos;
+
+    private RequestQueryStats() {
+    }
+
+    public static RequestQueryStats start() {
+        RequestQueryStats stats = new RequestQueryStats();
+        CURRENT.set(stats);
+        return stats;
+    }
+
+    public static RequestQueryStats current() {
+        return CURRENT.get();
+    }
+
+    public static void finish() {
+        CURRENT.remove();
+    }
+
+    public void recordStatement(String sql, long elapsedNanos) {
+        statements++;
+        nanos += elapsedNanos;
+        shapes.merge(sql == null ? UNKNOWN_SHAPE : shapeOf(sql), 1, Integer::sum);
+    }
+
+    public int getStatements() {
+        return statements;
+    }
+
+    public long getTimeMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+
+    public Map<String, Integer> getShapes() {
+        return Collections.unmodifiableMap(shapes);
+    }
+
+    /**
+     * Форма запроса: пробелы схлопнуты, строковые и числовые литералы заменены на «?»,
+     * подряд идущие «?» через запятую — на один «?».
+     */
+    public static String shapeOf(String sql) {
+        StringBuilder shape = new StringBuilder(sql.length());
+        int i = 0;
+        while (i < sql.length()) {
+            char c = sql.charAt(i);
+            if (Character.isWhitespace(c)) {
+                while (i < sql.length() && Character.isWhitespace(sql.charAt(i))) {
+                    i++;
+                }
+                if (shape.length() > 0 && i < sql.length()) {
+                    shape.append(' ');
+                }
+                continue;
+            }
+            if (c == '\'') {
+                i++;
+                while (i < sql.length() && (sql.charAt(i) != '\'' || i + 1 < sql.length() && sql.charAt(i + 1) == '\'')) {
+                    i += sql.charAt(i) == '\'' ? 2 : 1;
+                }
+                i++;
+                appendParameter(shape);
+                continue;
+            }
+            boolean identifierPart = shape.length() > 0 && isIdentifierPart(shape.charAt(shape.length() - 1));
+            if (Character.isDigit(c) && !identifierPart) {
+                while (i < sql.length() && (Character.isDigit(sql.charAt(i)) || sql.charAt(i) == '.')) {
+                    i++;
+                }
+                appendParameter(shape);
+                continue;
+            }
+            if (c == '?') {
+                i++;
+                appendParameter(shape);
+                continue;
+            }
+            shape.append(c);
+            i++;
+        }
+        return shape.toString();
+    }
+
+    private static void appendParameter(StringBuilder shape) {
+        int end = shape.length();
+        while (end > 0 && shape.charAt(end - 1) == ' ') {
+            end--;
+        }
+        if (end > 0 && shape.charAt(end - 1) == ',') {
+            int previous = end - 1;
+            while (previous > 0 && shape.charAt(previous - 1) == ' ') {
+                previous--;
+            }
+            if (previous > 0 && shape.charAt(previous - 1) == '?') {
+                shape.setLength(previous);
+                return;
+            }
+        }
+        shape.append('?');
+    }
+
+    private static boolean isIdentifierPart(char c) {
+        return Character.isLetterOrDigit(c) || c == '_';
+    }
+}
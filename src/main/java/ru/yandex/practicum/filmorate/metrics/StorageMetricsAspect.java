@@ -0,0 +1,57 @@
+package ru.yandex.practicum.filmorate.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.stereotype.Component;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Таймер с гистограммой на каждый публичный метод хранилищ *DbStorage. Метрика
+ * filmorate.storage.calls размечена именем хранилища, метода и классом исключения,
+ * которым закончился вызов. Таймеры успешных вызовов кэшируются по методу, чтобы
+ * не искать метр в реестре на каждом обращении к БД.
+ */
+@Aspect
+@Component
+public class StorageMetricsAspect {
+    public static final String STORAGE_CALLS = "filmorate.storage.calls";
+    private static final String NO_EXCEPTION = "None";
+
+    private final MeterRegistry meterRegistry;
+    private final Map<Method, Timer> timers = new ConcurrentHashMap<>();
+
+    public StorageMetricsAspect(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Around("execution(public * ru.yandex.practicum.filmorate.storage..*DbStorage.*(..))")
+    public Object time(ProceedingJoinPoint joinPoint) throws Throwable {
+        Method method = ((MethodSignature) joinPoint.getSignature()).getMethod();
+        Timer.Sample sample = Timer.start(meterRegistry);
+        try {
+            Object result = joinPoint.proceed();
+            sample.stop(timers.computeIfAbsent(method, m -> timer(m, NO_EXCEPTION)));
+            return result;
+        } catch (Throwable e) {
+            sample.stop(timer(method, e.getClass().getSimpleName()));
+            throw e;
+        }
+    }
+
+    private Timer timer(Method method, String exception) {
+        return Timer.builder(STORAGE_CALLS)
+                .description("Время вызова методов хранилищ в БД")
+                .tag("storage", method.getDeclaringClass().getSimpleName())
+                .tag("method", method.getName())
+                .tag("exception", exception)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,27 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import org.springframework.http.HttpStatus;
+
+@Data
+@Builder
+@AllArgsConstructor
+public class BatchItemResult {
+    private int index;
+
+    private Long id;
+
+    private int status;
+
+    private String error;
+
+    public static BatchItemResult ok(int index, Long id) {
+        return new BatchItemResult(index, id, HttpStatus.OK.value(), null);
+    }
+
+    public static BatchItemResult failed(int index, HttpStatus status, String error) {
+        return new BatchItemResult(index, null, status.value(), error);
+    }
+}
@@ -0,0 +1,21 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.Value;
+
+import java.util.List;
+import java.util.Map;
+
+@Value
+public class FacetedPage<T> {
+    public static final String GENRE_FACET = "genre";
+    public static final String MPA_FACET = "mpa";
+    public static final String YEAR_FACET = "year";
+
+    List<T> items;
+
+    Long nextCursor;
+
+    int total;
+
+    Map<String, Map<Integer, Integer>> facets;
+}
@@ -0,0 +1,18 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.Builder;
+import lombok.Value;
+
+import java.util.List;
+
+@Value
+@Builder
+public class FilmFilter {
+    List<Integer> genres;
+
+    List<Integer> mpa;
+
+    Integer yearFrom;
+
+    Integer yearTo;
+}
@@ -0,0 +1,18 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+
+import javax.validation.constraints.NotNull;
+
+@Data
+@Builder
+@AllArgsConstructor
+public class Like {
+    @NotNull(message = "filmId не может быть пустым")
+    private Long filmId;
+
+    @NotNull(message = "userId не может быть пустым")
+    private Long userId;
+}
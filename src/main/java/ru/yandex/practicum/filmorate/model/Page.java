@@ -0,0 +1,42 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.List;
+import java.util.function.Function;
+
+@Value
+public class Page<T> {
+    public static final int DEFAULT_LIMIT = 100;
+    public static final int MAX_LIMIT = 1000;
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+    List<T> items;
+
+    Long nextCursor;
+
+    public static <T> Page<T> of(List<T> items, int limit, Function<T, Long> idExtractor) {
+        Long nextCursor = items.size() < limit ? null : idExtractor.apply(items.get(items.size() - 1));
+        return new Page<>(items, nextCursor);
+    }
+
+    /**
+     * Размер страницы из запроса: без параметра - DEFAULT_LIMIT, больше MAX_LIMIT - MAX_LIMIT,
+     * ноль и меньше - 400.
+     */
+    public static int checkLimit(Integer limit) {
+        return checkLimit(limit, DEFAULT_LIMIT, MAX_LIMIT);
+    }
+
+    public static int checkLimit(Integer limit, int defaultLimit, int maxLimit) {
+        if (limit == null) {
+            return defaultLimit;
+        }
+        if (limit <= 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Некорректный размер страницы " + limit);
+        }
+        return Math.min(limit, maxLimit);
+    }
+}
@@ -0,0 +1,116 @@
+package ru.yandex.practicum.filmorate.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.BatchItemResult;
+import ru.yandex.practicum.filmorate.storage.Storage;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import java.util.Collection;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Пакетная запись элементов чанками: каждый чанк пишется одной транзакцией хранилища.
+ * Если чанк целиком не записался, он повторяется поштучно, чтобы вернуть результат по каждому элементу.
+ */
+@Slf4j
+@Component
+public class BatchProcessor {
+    private final Validator validator;
+    private final int chunkSize;
+
+    public BatchProcessor(Validator validator, @Value("${filmorate.batch.chunk-size:1000}") int chunkSize) {
+        this.validator = validator;
+        this.chunkSize = chunkSize;
+    }
+
+    public String validate(Object item) {
+        if (item == null) {
+            return "элемент не может быть null";
+        }
+        try {
+            Set<ConstraintViolation<Object>> violations = validator.validate(item);
+            if (violations.isEmpty()) {
+                return null;
+            }
+            return violations.stream()
+                    .map(ConstraintViolation::getMessage)
+                    .sorted()
+                    .collect(Collectors.joining("; "));
+        } catch (RuntimeException e) {
+            return "элемент не прошёл валидацию: " + e.getMessage();
+        }
+    }
+
+    /**
+     * Id, которых нет в хранилище. Существующие id запрашиваются чанками по chunk-size,
+     * разность считается в памяти.
+     */
+    public Set<Long> findMissing(Storage<?> storage, Collection<Long> ids) {
+        List<Long> distinctIds = new ArrayList<>(new LinkedHashSet<>(ids));
+        Set<Long> existing = new HashSet<>();
+        for (int from = 0; from < distinctIds.size(); from += chunkSize) {
+            int to = Math.min(from + chunkSize, distinctIds.size());
+            existing.addAll(storage.findExisting(distinctIds.subList(from, to)));
+        }
+        Set<Long> missing = new HashSet<>(distinctIds);
+        missing.removeAll(existing);
+        return missing;
+    }
+
+    public <T, R> void execute(List<T> items,
+                               List<Integer> indexes,
+                               Function<List<T>, List<R>> chunkWriter,
+                               Function<T, R> itemWriter,
+                               BiConsumer<Integer, R> onSuccess,
+                               BiConsumer<Integer, BatchItemResult> onFailure) {
+        for (int from = 0; from < items.size(); from += chunkSize) {
+            int to = Math.min(from + chunkSize, items.size());
+            List<T> chunk = items.subList(from, to);
+            List<R> written;
+            try {
+                written = chunkWriter.apply(chunk);
+            } catch (RuntimeException e) {
+                log.info("Чанк {}-{} не записан целиком, повтор поштучно: {}", from, to, e.getMessage());
+                for (int i = from; i < to; i++) {
+                    int index = indexes.get(i);
+                    try {
+                        onSuccess.accept(index, itemWriter.apply(items.get(i)));
+                    } catch (DataIntegrityViolationException ex) {
+                        onFailure.accept(index, BatchItemResult.failed(index, HttpStatus.CONFLICT,
+                                ex.getMostSpecificCause().getMessage()));
+                    } catch (RuntimeException ex) {
+                        onFailure.accept(index, BatchItemResult.failed(index, HttpStatus.INTERNAL_SERVER_ERROR,
+                                ex.getMessage()));
+                    }
+                }
+                continue;
+            }
+            if (written == null || written.size() != chunk.size()) {
+                // Чанк уже записан, поштучный повтор дал бы дубликаты; сопоставить результаты по позиции нельзя.
+                int actual = written == null ? 0 : written.size();
+                log.warn("Чанк {}-{} вернул {} результатов вместо {}", from, to, actual, chunk.size());
+                for (int i = from; i < to; i++) {
+                    int index = indexes.get(i);
+                    onFailure.accept(index, BatchItemResult.failed(index, HttpStatus.INTERNAL_SERVER_ERROR,
+                            "чанк вернул " + actual + " результатов вместо " + chunk.size()));
+                }
+                continue;
+            }
+            for (int i = 0; i < written.size(); i++) {
+                onSuccess.accept(indexes.get(from + i), written.get(i));
+            }
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package ru.yandex.practicum.filmorate.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.event.FilmEvent;
+import ru.yandex.practicum.filmorate.storage.event.LikeEvent;
+import ru.yandex.practicum.filmorate.storage.event.UserEvent;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.user.UserStorage;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ограниченный по размеру кэш фильмов и пользователей по id перед хранилищами, вытеснение W-TinyLFU.
+ * Отсутствие сущности тоже кэшируется, но только на negative-ttl-ms. Запись сбрасывается событием
+ * хранилища после фиксации изменения; сброс, пришедший во время загрузки того же id, ждёт её
+ * окончания и удаляет загруженное значение. Возвращаемые объекты общие для всех запросов, изменять их нельзя.
+ */
+@Component
+@ConditionalOnProperty(value = "filmorate.entity-cache.enabled", havingValue = "true", matchIfMissing = true)
+public class EntityCache {
+    private final FilmStorage filmStorage;
+    private final UserStorage userStorage;
+    private final Cache<Long, Optional<Film>> films;
+    private final Cache<Long, Optional<User>> users;
+
+    public EntityCache(FilmStorage filmStorage,
+                       UserStorage userStorage,
+                       MeterRegistry meterRegistry,
+                       @Value("${filmorate.entity-cache.maximum-size:10000}") long maximumSize,
+                       @Value("${filmorate.entity-cache.negative-ttl-ms:1000}") long negativeTtlMs) {
+        this.filmStorage = filmStorage;
+        this.userStorage = userStorage;
+        this.films = CaffeineCacheMetrics.monitor(meterRegistry, build(maximumSize, negativeTtlMs), "films");
+        this.users = CaffeineCacheMetrics.monitor(meterRegistry, build(maximumSize, negativeTtlMs), "users");
+    }
+
+    public Optional<Film> getFilm(Long id) {
+        return id == null ? Optional.empty() : films.get(id, filmStorage::getById);
+    }
+
+    public Optional<User> getUser(Long id) {
+        return id == null ? Optional.empty() : users.get(id, userStorage::getById);
+    }
+
+    /**
+     * Проверка существования не загружает сущность в кэш: если записи нет, спрашивает хранилище
+     * дешёвым exists.
+     */
+    public boolean filmExists(Long id) {
+        Optional<Film> cached = id == null ? null : films.getIfPresent(id);
+        return cached != null ? cached.isPresent() : filmStorage.exists(id);
+    }
+
+    public boolean userExists(Long id) {
+        Optional<User> cached = id == null ? null : users.getIfPresent(id);
+        return cached != null ? cached.isPresent() : userStorage.exists(id);
+    }
+
+    /**
+     * Выполняет отложенное обслуживание кэшей, в том числе вытеснение сверх maximum-size.
+     */
+    public void cleanUp() {
+        films.cleanUp();
+        users.cleanUp();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onFilm(FilmEvent event) {
+        films.invalidate(event.getFilmId());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onLike(LikeEvent event) {
+        films.invalidate(event.getFilmId());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUser(UserEvent event) {
+        users.invalidate(event.getUserId());
+    }
+
+    private static <T> Cache<Long, Optional<T>> build(long maximumSize, long negativeTtlMs) {
+        long negativeTtlNanos = TimeUnit.MILLISECONDS.toNanos(negativeTtlMs);
+        return Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfter(new Expiry<Long, Optional<T>>() {
+                    @Override
+                    public long expireAfterCreate(Long id, Optional<T> value, long currentTime) {
+                        return value.isPresent() ? Long.MAX_VALUE : negativeTtlNanos;
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(Long id, Optional<T> value, long currentTime, long currentDuration) {
+                        return expireAfterCreate(id, value, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(Long id, Optional<T> value, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+    }
+}
@@ -2,29 +2,57 @@ package ru.yandex.practicum.filmorate.service;
 
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.web.server.ResponseStatusException;
+import ru.yandex.practicum.filmorate.index.FilmFacetIndex;
+import ru.yandex.practicum.filmorate.index.FilmSearchIndex;
+import ru.yandex.practicum.filmorate.index.PopularityIndex;
+import ru.yandex.practicum.filmorate.model.BatchItemResult;
+import ru.yandex.practicum.filmorate.model.FacetedPage;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmFilter;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Like;
+import ru.yandex.practicum.filmorate.model.Page;
+import ru.yandex.practicum.filmorate.storage.catalog.ReferenceDataCatalog;
 import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
 import ru.yandex.practicum.filmorate.storage.likes.LikesStorage;
 import ru.yandex.practicum.filmorate.storage.user.UserStorage;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
 
 @Service
 @Slf4j
 public class FilmService {
+    public static final int MAX_POPULAR_COUNT = 1000;
+    private static final int DEFAULT_SEARCH_LIMIT = 10;
 
     @Autowired
-    @Qualifier(value = "filmDbStorage")
     private FilmStorage filmStorage;
     @Autowired
-    @Qualifier(value = "userDbStorage")
     private UserStorage userStorage;
+    @Autowired(required = false)
+    private PopularityIndex popularityIndex;
+    @Autowired(required = false)
+    private FilmSearchIndex filmSearchIndex;
+    @Autowired(required = false)
+    private FilmFacetIndex filmFacetIndex;
+    @Autowired(required = false)
+    private PopularFilmsCache popularFilmsCache;
+    @Autowired(required = false)
+    private EntityCache entityCache;
+    @Autowired
+    private BatchProcessor batchProcessor;
+    @Autowired
+    private ReferenceDataCatalog catalog;
     private final LikesStorage likesStorage;
 
     public FilmService(LikesStorage likesStorage) {
@@ -32,23 +60,82 @@ public class FilmService {
     }
 
     public Film addFilm(Film film) {
+        checkReferences(film);
         return filmStorage.add(film);
     }
 
+    public List<BatchItemResult> addFilms(List<Film> films) {
+        BatchItemResult[] results = new BatchItemResult[films.size()];
+        List<Film> validFilms = new ArrayList<>();
+        List<Integer> indexes = new ArrayList<>();
+        for (int i = 0; i < films.size(); i++) {
+            Film film = films.get(i);
+            String error = batchProcessor.validate(film);
+            ResponseStatusException referenceError = error == null ? findReferenceError(film) : null;
+            if (error != null) {
+                results[i] = BatchItemResult.failed(i, HttpStatus.BAD_REQUEST, error);
+            } else if (referenceError != null) {
+                results[i] = BatchItemResult.failed(i, referenceError.getStatus(), referenceError.getReason());
+            } else {
+                validFilms.add(film);
+                indexes.add(i);
+            }
+        }
+        batchProcessor.execute(validFilms, indexes, filmStorage::addAll, filmStorage::add,
+                (index, film) -> results[index] = BatchItemResult.ok(index, film.getId()),
+                (index, result) -> results[index] = result);
+        log.info("Пакетное добавление фильмов: получено {}, добавлено {}", films.size(), validFilms.size());
+        return Arrays.asList(results);
+    }
+
     public Film updateFilm(Film film) {
-        if (containsFilm(film.getId())) {
-            return filmStorage.update(film).get();
+        checkReferences(film);
+        return filmStorage.update(film).orElseThrow(() -> {
+            log.info("Фильм " + film.getId() + " не найден");
+            return new ResponseStatusException(HttpStatus.NOT_FOUND);
+        });
+    }
+
+    /**
+     * Жанры и рейтинг MPA фильма должны быть в справочниках: иначе фильм сохранился бы
+     * со ссылками, которых нет в ответе.
+     */
+    private void checkReferences(Film film) {
+        ResponseStatusException error = findReferenceError(film);
+        if (error != null) {
+            log.info(error.getReason());
+            throw error;
         }
-        log.info("Фильм " + film.getId() + " не найден");
-        throw new ResponseStatusException(HttpStatus.NOT_FOUND);
     }
 
-    public Film getFilmById(Long id) {
-        if (containsFilm(id)) {
-            return filmStorage.getById(id).get();
+    private ResponseStatusException findReferenceError(Film film) {
+        if (film.getMpa() == null || film.getMpa().getId() == null) {
+            return new ResponseStatusException(HttpStatus.BAD_REQUEST, "mpa не может быть пустым");
         }
-        log.info("Фильм " + id + " не найден");
-        throw new ResponseStatusException(HttpStatus.NOT_FOUND);
+        if (catalog.getMpa(film.getMpa().getId()) == null) {
+            return new ResponseStatusException(HttpStatus.NOT_FOUND,
+                    "Рейтинг MPA " + film.getMpa().getId() + " не найден");
+        }
+        if (film.getGenres() == null) {
+            return null;
+        }
+        for (Genre genre : film.getGenres()) {
+            if (genre == null) {
+                return new ResponseStatusException(HttpStatus.BAD_REQUEST, "жанр не может быть пустым");
+            }
+            if (catalog.getGenre(genre.getId()) == null) {
+                return new ResponseStatusException(HttpStatus.NOT_FOUND, "Жанр " + genre.getId() + " не найден");
+            }
+        }
+        return null;
+    }
+
+    public Film getFilmById(Long id) {
+        Optional<Film> film = entityCache == null ? filmStorage.getById(id) : entityCache.getFilm(id);
+        return film.orElseThrow(() -> {
+            log.info("Фильм " + id + " не найден");
+            return new ResponseStatusException(HttpStatus.NOT_FOUND);
+        });
     }
 
     public void deleteFilm(Long id) {
@@ -63,6 +150,15 @@ public class FilmService {
         return filmStorage.getAll();
     }
 
+    public void streamAllFilms(Consumer<? super Film> action) {
+        filmStorage.streamAll(action);
+    }
+
+    public Page<Film> getFilmsPage(Long after, Integer limit) {
+        int pageLimit = Page.checkLimit(limit);
+        return Page.of(filmStorage.getPage(after, pageLimit), pageLimit, Film::getId);
+    }
+
     public void addLike(Long id, Long userId) {
         if (containsFilm(id)) {
             if (containsUser(userId)) {
@@ -91,19 +187,98 @@ public class FilmService {
         }
     }
 
+    public List<BatchItemResult> addLikes(List<Like> likes) {
+        BatchItemResult[] results = new BatchItemResult[likes.size()];
+        for (int i = 0; i < likes.size(); i++) {
+            String error = batchProcessor.validate(likes.get(i));
+            if (error != null) {
+                results[i] = BatchItemResult.failed(i, HttpStatus.BAD_REQUEST, error);
+            }
+        }
+        Set<Long> filmIds = new HashSet<>();
+        Set<Long> userIds = new HashSet<>();
+        for (int i = 0; i < likes.size(); i++) {
+            if (results[i] == null) {
+                filmIds.add(likes.get(i).getFilmId());
+                userIds.add(likes.get(i).getUserId());
+            }
+        }
+        Set<Long> missingFilms = batchProcessor.findMissing(filmStorage, filmIds);
+        Set<Long> missingUsers = batchProcessor.findMissing(userStorage, userIds);
+
+        List<Like> validLikes = new ArrayList<>();
+        List<Integer> indexes = new ArrayList<>();
+        for (int i = 0; i < likes.size(); i++) {
+            if (results[i] != null) {
+                continue;
+            }
+            Like like = likes.get(i);
+            if (missingFilms.contains(like.getFilmId())) {
+                results[i] = BatchItemResult.failed(i, HttpStatus.NOT_FOUND, "Фильм " + like.getFilmId() + " не найден");
+            } else if (missingUsers.contains(like.getUserId())) {
+                results[i] = BatchItemResult.failed(i, HttpStatus.NOT_FOUND,
+                        "Пользователь " + like.getUserId() + " не найден");
+            } else {
+                validLikes.add(like);
+                indexes.add(i);
+            }
+        }
+        batchProcessor.execute(validLikes, indexes, likesStorage::addLikes,
+                like -> {
+                    likesStorage.addLike(like.getFilmId(), like.getUserId());
+                    return Boolean.TRUE;
+                },
+                (index, added) -> results[index] = BatchItemResult.ok(index, null),
+                (index, result) -> results[index] = result);
+        log.info("Пакетное добавление лайков: получено {}, записано {}", likes.size(), validLikes.size());
+        return Arrays.asList(results);
+    }
+
     public List<Film> getListPopularFilms(Integer count) {
-        return likesStorage.getTopFilmLikes()
-                .stream()
-                .limit(count)
-                .map(this::getFilmById)
-                .collect(Collectors.toList());
+        if (count == null || count <= 0) {
+            log.info("Некорректное число популярных фильмов " + count);
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST);
+        }
+        count = Math.min(count, MAX_POPULAR_COUNT);
+        if (popularFilmsCache != null) {
+            return popularFilmsCache.get(count);
+        }
+        if (popularityIndex == null) {
+            return filmStorage.getPopular(count);
+        }
+        return filmStorage.getByIds(popularityIndex.getTop(count));
+    }
+
+    public FacetedPage<Film> getFilmsByFacets(FilmFilter filter, Long after, Integer limit) {
+        int pageLimit = Page.checkLimit(limit);
+        if (filmFacetIndex == null) {
+            log.info("Фильтрация фильмов недоступна: индекс фасетов отключен");
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE);
+        }
+        FacetedPage<Long> page = filmFacetIndex.filter(filter, after, pageLimit);
+        return new FacetedPage<>(filmStorage.getByIds(page.getItems()), page.getNextCursor(),
+                page.getTotal(), page.getFacets());
+    }
+
+    public List<Film> searchFilms(String query, Integer limit) {
+        int searchLimit = limit == null ? DEFAULT_SEARCH_LIMIT : limit;
+        if (query == null || query.isBlank() || searchLimit <= 0) {
+            log.info("Некорректный поисковый запрос \"" + query + "\" с лимитом " + limit);
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST);
+        }
+        if (filmSearchIndex == null) {
+            log.info("Поиск фильмов недоступен: поисковый индекс отключен");
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE);
+        }
+        return filmStorage.getByIds(filmSearchIndex.search(query,
+                Math.min(searchLimit, FilmSearchIndex.MAX_RESULTS)));
     }
 
     private boolean containsUser(Long id) {
-        return userStorage.getUsersMap().containsKey(id);
+        return entityCache == null ? userStorage.exists(id) : entityCache.userExists(id);
     }
 
     private boolean containsFilm(Long id) {
-        return filmStorage.getById(id).isPresent();
+        return entityCache == null ? filmStorage.exists(id) : entityCache.filmExists(id);
     }
 }
\ No newline at end of file
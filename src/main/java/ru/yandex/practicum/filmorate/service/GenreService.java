@@ -23,11 +23,12 @@ public class GenreService {
     }
 
     public Genre getGenreById(Integer genreId) {
-        if (genresStorage.getGenreById(genreId) == null) {
+        Genre genre = genresStorage.getGenreById(genreId);
+        if (genre == null) {
             log.info("Жанр с id " + genreId + " не найден");
             throw new ResponseStatusException(HttpStatus.NOT_FOUND);
         }
-        return genresStorage.getGenreById(genreId);
+        return genre;
     }
 
     public List<Genre> getAllGenre() {
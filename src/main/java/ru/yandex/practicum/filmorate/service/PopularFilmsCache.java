@@ -0,0 +1,154 @@
+package ru.yandex.practicum.filmorate.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.yandex.practicum.filmorate.index.PopularityIndex;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.storage.event.FilmEvent;
+import ru.yandex.practicum.filmorate.storage.event.LikeEvent;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Кэш готовых списков популярных фильмов. Ключ — count, округлённый вверх до степени двойки
+ * и ограниченный {@link FilmService#MAX_POPULAR_COUNT}, ответ нарезается из списка ключа: так
+ * ключей не больше дюжины при любых count. Состав списка сверяется с рейтингом
+ * {@link PopularityIndex} при каждом чтении, это проход по элементам списка в памяти;
+ * события хранилища сбрасывают только те записи, где есть изменённый фильм, потому что у него
+ * поменялись данные или число лайков. Без рейтинга любое событие сбрасывает весь кэш.
+ * Сброшенная запись отдаётся как есть, пока с её построения прошло не больше max-staleness-ms;
+ * при значении 0 ответ всегда актуален.
+ * Если во время построения записи пришло событие, запись сохраняется уже сброшенной.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(value = "filmorate.popular-cache.enabled", havingValue = "true", matchIfMissing = true)
+public class PopularFilmsCache {
+    private final FilmStorage filmStorage;
+    private final PopularityIndex popularityIndex;
+    private final long maxStalenessNanos;
+    private final Map<Integer, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicLong changes = new AtomicLong();
+    private final Counter hits;
+    private final Counter staleHits;
+    private final Counter misses;
+    private final Timer rebuildTimer;
+
+    public PopularFilmsCache(FilmStorage filmStorage,
+                             ObjectProvider<PopularityIndex> popularityIndex,
+                             MeterRegistry meterRegistry,
+                             @Value("${filmorate.popular-cache.max-staleness-ms:0}") long maxStalenessMs) {
+        this.filmStorage = filmStorage;
+        this.popularityIndex = popularityIndex.getIfAvailable();
+        this.maxStalenessNanos = TimeUnit.MILLISECONDS.toNanos(maxStalenessMs);
+        this.hits = requestCounter(meterRegistry, "hit");
+        this.staleHits = requestCounter(meterRegistry, "stale");
+        this.misses = requestCounter(meterRegistry, "miss");
+        this.rebuildTimer = Timer.builder("filmorate.popular.cache.rebuild")
+                .description("Время построения списка популярных фильмов при промахе кэша")
+                .register(meterRegistry);
+        Gauge.builder("filmorate.popular.cache.hit.ratio", this, PopularFilmsCache::getHitRatio)
+                .description("Доля запросов популярных фильмов, отданных из кэша")
+                .register(meterRegistry);
+    }
+
+    public List<Film> get(int count) {
+        int size = bucketOf(count);
+        List<Long> topIds = popularityIndex == null ? null : popularityIndex.getTop(size);
+        Entry entry = entries.get(size);
+        if (entry != null) {
+            if (entry.valid && (topIds == null || topIds.equals(entry.filmIds))) {
+                hits.increment();
+                return slice(entry.films, count);
+            }
+            if (System.nanoTime() - entry.builtAt <= maxStalenessNanos) {
+                staleHits.increment();
+                return slice(entry.films, count);
+            }
+        }
+        misses.increment();
+
+        long seenChanges = changes.get();
+        long started = System.nanoTime();
+        List<Film> films = Collections.unmodifiableList(topIds == null
+                ? filmStorage.getPopular(size)
+                : filmStorage.getByIds(topIds));
+        rebuildTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        List<Long> filmIds = topIds != null ? topIds : films.stream().map(Film::getId).collect(Collectors.toList());
+        entries.put(size, new Entry(films, filmIds, started, changes.get() == seenChanges));
+        return slice(films, count);
+    }
+
+    public double getHitRatio() {
+        double requests = hits.count() + staleHits.count() + misses.count();
+        return requests == 0 ? 0 : (hits.count() + staleHits.count()) / requests;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onLike(LikeEvent event) {
+        invalidate(event.getFilmId());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onFilm(FilmEvent event) {
+        // Новый фильм в рейтинге попадёт в список через сверку состава, его данные в кэше ещё не лежат.
+        if (event.getType() != FilmEvent.Type.ADDED || popularityIndex == null) {
+            invalidate(event.getFilmId());
+        }
+    }
+
+    private void invalidate(Long filmId) {
+        changes.incrementAndGet();
+        entries.replaceAll((count, entry) -> entry.valid
+                && (popularityIndex == null || entry.filmIds.contains(filmId)) ? entry.invalidated() : entry);
+    }
+
+    private static int bucketOf(int count) {
+        if (count <= 1) {
+            return 1;
+        }
+        int capped = Math.min(count, FilmService.MAX_POPULAR_COUNT);
+        return Math.min(Integer.highestOneBit(capped - 1) << 1, FilmService.MAX_POPULAR_COUNT);
+    }
+
+    private static List<Film> slice(List<Film> films, int count) {
+        return films.size() <= count ? films : films.subList(0, Math.max(count, 0));
+    }
+
+    private static Counter requestCounter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("filmorate.popular.cache.requests")
+                .description("Запросы популярных фильмов по результату обращения к кэшу")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    @lombok.Value
+    private static class Entry {
+        List<Film> films;
+
+        List<Long> filmIds;
+
+        long builtAt;
+
+        boolean valid;
+
+        Entry invalidated() {
+            return new Entry(films, filmIds, builtAt, false);
+        }
+    }
+}
@@ -3,12 +3,13 @@ package ru.yandex.practicum.filmorate.service;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
 import ru.yandex.practicum.filmorate.model.MPA;
 import ru.yandex.practicum.filmorate.storage.rating.RatingStorage;
 
 import java.util.List;
-import java.util.Optional;
 
 @Service("RatingService")
 @Slf4j
@@ -21,8 +22,11 @@ public class RatingService {
         this.ratingStorage = ratingStorage;
     }
 
-    public Optional<MPA> getRatingById(Integer id) {
-        return ratingStorage.getRatingById(id);
+    public MPA getRatingById(Integer id) {
+        return ratingStorage.getRatingById(id).orElseThrow(() -> {
+            log.info("Рейтинг с id " + id + " не найден");
+            return new ResponseStatusException(HttpStatus.NOT_FOUND);
+        });
     }
 
     public List<MPA> getRatingAll() {
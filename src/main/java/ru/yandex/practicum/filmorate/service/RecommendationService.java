@@ -0,0 +1,73 @@
+package ru.yandex.practicum.filmorate.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+import ru.yandex.practicum.filmorate.index.LikeBitmapIndex;
+import ru.yandex.practicum.filmorate.index.SimilarFilmsIndex;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.user.UserStorage;
+
+import java.util.List;
+
+@Service
+@Slf4j
+public class RecommendationService {
+    private static final int DEFAULT_LIMIT = 10;
+
+    @Autowired
+    private FilmStorage filmStorage;
+    @Autowired
+    private UserStorage userStorage;
+    @Autowired(required = false)
+    private LikeBitmapIndex likeBitmapIndex;
+    @Autowired(required = false)
+    private SimilarFilmsIndex similarFilmsIndex;
+
+    public List<Film> getRecommendations(Long userId, Integer limit) {
+        int recommendationsLimit = limit == null ? DEFAULT_LIMIT : limit;
+        if (recommendationsLimit <= 0) {
+            log.info("Некорректное число рекомендаций " + limit);
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST);
+        }
+        if (!userStorage.exists(userId)) {
+            log.info("Пользователь " + userId + " не найден");
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND);
+        }
+        if (likeBitmapIndex == null) {
+            log.info("Рекомендации фильмов недоступны: индекс лайков отключен");
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE);
+        }
+        return filmStorage.getByIds(likeBitmapIndex.getRecommendations(userId,
+                Math.min(recommendationsLimit, LikeBitmapIndex.MAX_RECOMMENDATIONS)));
+    }
+
+    public List<Film> getSimilarFilms(Long filmId, Integer limit) {
+        int similarLimit = limit == null ? DEFAULT_LIMIT : limit;
+        if (similarLimit <= 0) {
+            log.info("Некорректное число похожих фильмов " + limit);
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST);
+        }
+        if (!filmStorage.exists(filmId)) {
+            log.info("Фильм " + filmId + " не найден");
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND);
+        }
+        return filmStorage.getByIds(getSimilarFilmsIndex().getSimilar(filmId, similarLimit));
+    }
+
+    public void recomputeSimilarFilms() {
+        getSimilarFilmsIndex().requestRecompute();
+        log.info("Пересчёт похожих фильмов запрошен");
+    }
+
+    private SimilarFilmsIndex getSimilarFilmsIndex() {
+        if (similarFilmsIndex == null) {
+            log.info("Похожие фильмы недоступны: расчёт отключен");
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE);
+        }
+        return similarFilmsIndex;
+    }
+}
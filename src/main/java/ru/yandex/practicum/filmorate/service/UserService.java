@@ -2,33 +2,73 @@ package ru.yandex.practicum.filmorate.service;
 
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.web.server.ResponseStatusException;
+import ru.yandex.practicum.filmorate.index.FriendGraph;
+import ru.yandex.practicum.filmorate.model.BatchItemResult;
+import ru.yandex.practicum.filmorate.model.FriendSuggestion;
+import ru.yandex.practicum.filmorate.model.Friendship;
+import ru.yandex.practicum.filmorate.model.Page;
 import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.storage.user.UserStorage;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 @Slf4j
 public class UserService {
+    private static final int DEFAULT_SUGGESTIONS_LIMIT = 10;
+    private static final int MAX_SUGGESTIONS_LIMIT = 100;
 
     @Autowired
-    @Qualifier(value = "userDbStorage")
     private UserStorage userStorage;
+    @Autowired
+    private BatchProcessor batchProcessor;
+    @Autowired(required = false)
+    private FriendGraph friendGraph;
+    @Autowired(required = false)
+    private EntityCache entityCache;
 
     public User createUser(User user) {
         return userStorage.add(user);
     }
 
-    public User updateUser(User user) {
-        if (contains(user.getId())) {
-            return userStorage.update(user).get();
+    public List<BatchItemResult> addUsers(List<User> users) {
+        BatchItemResult[] results = new BatchItemResult[users.size()];
+        List<User> validUsers = new ArrayList<>();
+        List<Integer> indexes = new ArrayList<>();
+        for (int i = 0; i < users.size(); i++) {
+            String error = batchProcessor.validate(users.get(i));
+            if (error != null) {
+                results[i] = BatchItemResult.failed(i, HttpStatus.BAD_REQUEST, error);
+            } else {
+                validUsers.add(users.get(i));
+                indexes.add(i);
+            }
         }
-        log.info("User с id " + user.getId() + " не найден");
-        throw new ResponseStatusException(HttpStatus.NOT_FOUND);
+        batchProcessor.execute(validUsers, indexes, userStorage::addAll, userStorage::add,
+                (index, user) -> results[index] = BatchItemResult.ok(index, user.getId()),
+                (index, result) -> results[index] = result);
+        log.info("Пакетное добавление пользователей: получено {}, добавлено {}", users.size(), validUsers.size());
+        return Arrays.asList(results);
+    }
+
+    public User updateUser(User user) {
+        return userStorage.update(user).orElseThrow(() -> {
+            log.info("User с id " + user.getId() + " не найден");
+            return new ResponseStatusException(HttpStatus.NOT_FOUND);
+        });
     }
 
     public void deleteUser(Long id) {
@@ -43,44 +83,92 @@ public class UserService {
         return userStorage.getAll();
     }
 
+    public void streamAllUsers(Consumer<? super User> action) {
+        userStorage.streamAll(action);
+    }
+
+    public Page<User> getUsersPage(Long after, Integer limit) {
+        int pageLimit = Page.checkLimit(limit);
+        return Page.of(userStorage.getPage(after, pageLimit), pageLimit, User::getId);
+    }
+
     public User getUserById(Long id) {
-        if (contains(id)) {
-            return userStorage.getById(id).get();
-        }
-        log.info("User с id " + id + " не найден");
-        throw new ResponseStatusException(HttpStatus.NOT_FOUND);
+        Optional<User> user = entityCache == null ? userStorage.getById(id) : entityCache.getUser(id);
+        return user.orElseThrow(() -> {
+            log.info("User с id " + id + " не найден");
+            return new ResponseStatusException(HttpStatus.NOT_FOUND);
+        });
+    }
+
+    /**
+     * Контроллер вызывает проверку до ETag списка друзей, чтобы у несуществующего id не было тега
+     * и ответа 304. Пользователь читается через кэш сущностей, поэтому повторная проверка
+     * в getListOfFriends не идёт в базу.
+     */
+    public void checkUserExists(Long id) {
+        getUserById(id);
     }
 
     public void addFriend(Long id, Long friendId) {
-        if (contains(id)) {
-            if (contains(friendId)) {
-                userStorage.addFriend(id, friendId);
+        checkUsersExist(id, friendId);
+        userStorage.addFriend(id, friendId);
+    }
+
+    public List<BatchItemResult> addFriends(List<Friendship> friendships) {
+        BatchItemResult[] results = new BatchItemResult[friendships.size()];
+        Set<Long> userIds = new HashSet<>();
+        for (int i = 0; i < friendships.size(); i++) {
+            String error = batchProcessor.validate(friendships.get(i));
+            if (error != null) {
+                results[i] = BatchItemResult.failed(i, HttpStatus.BAD_REQUEST, error);
             } else {
-                log.info("Пользователь " + friendId + " не найден");
-                throw new ResponseStatusException(HttpStatus.NOT_FOUND);
+                userIds.add(friendships.get(i).getUserId());
+                userIds.add(friendships.get(i).getFriendId());
             }
-        } else {
-            log.info("Пользователь " + id + " не найден");
-            throw new ResponseStatusException(HttpStatus.NOT_FOUND);
         }
-    }
+        Set<Long> missingUsers = batchProcessor.findMissing(userStorage, userIds);
 
-    public void deleteFriend(Long id, Long friendId) {
-        if (contains(id)) {
-            if (contains(friendId)) {
-                userStorage.removeFriend(id, friendId);
+        List<Friendship> validFriendships = new ArrayList<>();
+        List<Integer> indexes = new ArrayList<>();
+        for (int i = 0; i < friendships.size(); i++) {
+            if (results[i] != null) {
+                continue;
+            }
+            Friendship friendship = friendships.get(i);
+            Long missingId = missingUsers.contains(friendship.getUserId()) ? friendship.getUserId()
+                    : missingUsers.contains(friendship.getFriendId()) ? friendship.getFriendId() : null;
+            if (missingId != null) {
+                results[i] = BatchItemResult.failed(i, HttpStatus.NOT_FOUND, "Пользователь " + missingId + " не найден");
             } else {
-                log.info("Пользователь " + friendId + " не найден");
-                throw new ResponseStatusException(HttpStatus.NOT_FOUND);
+                validFriendships.add(friendship);
+                indexes.add(i);
             }
-        } else {
-            log.info("Пользователь " + id + " не найден");
-            throw new ResponseStatusException(HttpStatus.NOT_FOUND);
         }
+        batchProcessor.execute(validFriendships, indexes,
+                chunk -> {
+                    userStorage.addFriends(chunk);
+                    return chunk;
+                },
+                friendship -> {
+                    userStorage.addFriend(friendship.getUserId(), friendship.getFriendId());
+                    return friendship;
+                },
+                (index, friendship) -> results[index] = BatchItemResult.ok(index, null),
+                (index, result) -> results[index] = result);
+        log.info("Пакетное добавление друзей: получено {}, записано {}", friendships.size(), validFriendships.size());
+        return Arrays.asList(results);
+    }
+
+    public void deleteFriend(Long id, Long friendId) {
+        checkUsersExist(id, friendId);
+        userStorage.removeFriend(id, friendId);
     }
 
     public Collection<User> getListOfFriends(Long id) {
         if (contains(id)) {
+            if (friendGraph != null) {
+                return userStorage.getByIds(toList(friendGraph.getFriends(id)));
+            }
             return userStorage.getFriends(id);
         }
         log.info("Пользователь " + id + " не найден");
@@ -88,19 +176,72 @@ public class UserService {
     }
 
     public Collection<User> getListSharedFriends(Long id, Long otherId) {
-        if (contains(id)) {
-            if (contains(otherId)) {
-                return userStorage.getCommonFriends(id, otherId);
-            } else {
-                log.info("Пользователь " + otherId + " не найден");
-                throw new ResponseStatusException(HttpStatus.NOT_FOUND);
-            }
+        checkUsersExist(id, otherId);
+        if (friendGraph != null) {
+            return userStorage.getByIds(toList(friendGraph.getCommonFriends(id, otherId)));
         }
-        log.info("Пользователь " + id + " не найден");
-        throw new ResponseStatusException(HttpStatus.NOT_FOUND);
+        return userStorage.getCommonFriends(id, otherId);
+    }
+
+    public Collection<User> getCommonFriends(List<Long> ids) {
+        if (ids == null || ids.size() < 2) {
+            log.info("Для поиска общих друзей нужно минимум два пользователя");
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST);
+        }
+        checkUsersExist(ids.toArray(new Long[0]));
+        if (friendGraph != null) {
+            return userStorage.getByIds(toList(friendGraph.getCommonFriends(
+                    ids.stream().mapToLong(Long::longValue).toArray())));
+        }
+        List<User> common = userStorage.getCommonFriends(ids.get(0), ids.get(1));
+        for (Long id : ids.subList(2, ids.size())) {
+            Set<Long> friendIds = userStorage.getFriends(id).stream()
+                    .map(User::getId)
+                    .collect(Collectors.toSet());
+            common.removeIf(user -> !friendIds.contains(user.getId()));
+        }
+        return common;
+    }
+
+    public List<FriendSuggestion> getFriendSuggestions(Long id, Integer limit) {
+        int suggestionsLimit = Page.checkLimit(limit, DEFAULT_SUGGESTIONS_LIMIT, MAX_SUGGESTIONS_LIMIT);
+        if (!contains(id)) {
+            log.info("Пользователь " + id + " не найден");
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND);
+        }
+        if (friendGraph == null) {
+            log.info("Рекомендации друзей недоступны: граф друзей отключен");
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE);
+        }
+        List<FriendGraph.Suggestion> suggestions = friendGraph.getSuggestions(id, suggestionsLimit);
+        Map<Long, User> users = userStorage.getByIds(suggestions.stream()
+                        .map(FriendGraph.Suggestion::getUserId)
+                        .collect(Collectors.toList())).stream()
+                .collect(Collectors.toMap(User::getId, Function.identity()));
+        return suggestions.stream()
+                .filter(suggestion -> users.containsKey(suggestion.getUserId()))
+                .map(suggestion -> new FriendSuggestion(users.get(suggestion.getUserId()),
+                        suggestion.getMutualFriends()))
+                .collect(Collectors.toList());
+    }
+
+    private List<Long> toList(long[] ids) {
+        return Arrays.stream(ids).boxed().collect(Collectors.toList());
     }
 
     private boolean contains(Long id) {
-        return userStorage.getUsersMap().containsKey(id);
+        return entityCache == null ? userStorage.exists(id) : entityCache.userExists(id);
+    }
+
+    private void checkUsersExist(Long... ids) {
+        if (userStorage.existsAll(Arrays.asList(ids))) {
+            return;
+        }
+        for (Long id : ids) {
+            if (!contains(id)) {
+                log.info("Пользователь " + id + " не найден");
+                throw new ResponseStatusException(HttpStatus.NOT_FOUND);
+            }
+        }
     }
 }
@@ -0,0 +1,81 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.springframework.dao.IncorrectResultSizeDataAccessException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Пакетная вставка многострочными INSERT ... VALUES (...), (...): H2 разбирает и исполняет
+ * один оператор на ROWS_PER_STATEMENT строк вместо оператора на строку в JDBC-пакете.
+ * Текст оператора для полного куска один и тот же, поэтому он берётся из кэша запросов сессии.
+ */
+public final class MultiRowInsert {
+    public static final int ROWS_PER_STATEMENT = 100;
+
+    private MultiRowInsert() {
+    }
+
+    @FunctionalInterface
+    public interface RowBinder<T> {
+        /**
+         * Выставляет параметры строки, начиная с индекса offset + 1.
+         */
+        void bind(PreparedStatement ps, int offset, T row) throws SQLException;
+    }
+
+    /**
+     * Вставляет строки и возвращает сгенерированные id в порядке строк.
+     */
+    public static <T> List<Long> insertReturningKeys(JdbcTemplate jdbcTemplate, String insertPrefix,
+                                                     String rowValues, int columns, List<T> rows,
+                                                     RowBinder<T> binder) {
+        List<Long> ids = execute(jdbcTemplate, insertPrefix, rowValues, columns, rows, binder, true);
+        if (ids.size() != rows.size()) {
+            throw new IncorrectResultSizeDataAccessException(rows.size(), ids.size());
+        }
+        return ids;
+    }
+
+    public static <T> void insert(JdbcTemplate jdbcTemplate, String insertPrefix, String rowValues, int columns,
+                                  List<T> rows, RowBinder<T> binder) {
+        execute(jdbcTemplate, insertPrefix, rowValues, columns, rows, binder, false);
+    }
+
+    private static <T> List<Long> execute(JdbcTemplate jdbcTemplate, String insertPrefix, String rowValues,
+                                          int columns, List<T> rows, RowBinder<T> binder, boolean returnKeys) {
+        if (rows.isEmpty()) {
+            return new ArrayList<>();
+        }
+        List<Long> ids = jdbcTemplate.execute((ConnectionCallback<List<Long>>) connection -> {
+            List<Long> keys = new ArrayList<>(returnKeys ? rows.size() : 0);
+            for (int from = 0; from < rows.size(); from += ROWS_PER_STATEMENT) {
+                List<T> part = rows.subList(from, Math.min(from + ROWS_PER_STATEMENT, rows.size()));
+                String sql = insertPrefix + String.join(", ", Collections.nCopies(part.size(), rowValues));
+                try (PreparedStatement ps = returnKeys
+                        ? connection.prepareStatement(sql, new String[]{"id"})
+                        : connection.prepareStatement(sql)) {
+                    for (int i = 0; i < part.size(); i++) {
+                        binder.bind(ps, i * columns, part.get(i));
+                    }
+                    ps.executeUpdate();
+                    if (returnKeys) {
+                        try (ResultSet generated = ps.getGeneratedKeys()) {
+                            while (generated.next()) {
+                                keys.add(generated.getLong(1));
+                            }
+                        }
+                    }
+                }
+            }
+            return keys;
+        });
+        return ids == null ? new ArrayList<>() : ids;
+    }
+}
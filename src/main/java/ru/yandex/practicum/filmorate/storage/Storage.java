@@ -1,17 +1,34 @@
 package ru.yandex.practicum.filmorate.storage;
 
 import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
 
 public interface Storage<T> {
 
     T add(T obj);
 
+    List<T> addAll(List<T> objs);
+
     Optional<T> update(T obj);
 
     Optional<T> getById(Long id);
 
+    List<T> getByIds(List<Long> ids);
+
+    boolean exists(Long id);
+
+    boolean existsAll(Collection<Long> ids);
+
+    Set<Long> findExisting(Collection<Long> ids);
+
     void delete(Long id);
 
     Collection<T> getAll();
+
+    List<T> getPage(Long after, int limit);
+
+    void streamAll(Consumer<? super T> action);
 }
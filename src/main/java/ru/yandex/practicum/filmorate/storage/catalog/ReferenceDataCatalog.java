@@ -0,0 +1,91 @@
+package ru.yandex.practicum.filmorate.storage.catalog;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.MPA;
+
+import javax.annotation.PostConstruct;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Справочники жанров и рейтингов MPA, загруженные в память при старте.
+ * Поиск по id идёт по массиву без обращения к базе; после изменения справочника
+ * снимок перечитывается целиком и подменяется одной записью volatile-поля.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ReferenceDataCatalog {
+    private static final String GET_ALL_GENRES_QUERY = "SELECT * FROM genreNames ORDER BY genreId";
+    private static final String GET_ALL_RATINGS_QUERY = "SELECT * FROM MPARatings ORDER BY ratingMPAId";
+
+    private final JdbcTemplate jdbcTemplate;
+    private volatile Snapshot snapshot = new Snapshot(Collections.emptyList(), Collections.emptyList());
+    private volatile long version;
+
+    @PostConstruct
+    public synchronized void reload() {
+        List<Genre> genres = jdbcTemplate.query(GET_ALL_GENRES_QUERY, (rs, rowNum) -> Genre.builder()
+                .id(rs.getInt("genreId"))
+                .name(rs.getString("genre"))
+                .build());
+        List<MPA> ratings = jdbcTemplate.query(GET_ALL_RATINGS_QUERY, (rs, rowNum) -> MPA.builder()
+                .id(rs.getInt("ratingMPAId"))
+                .name(rs.getString("ratingName"))
+                .build());
+        snapshot = new Snapshot(genres, ratings);
+        version++;
+        log.info("Справочники загружены: жанров {}, рейтингов {}", genres.size(), ratings.size());
+    }
+
+    /**
+     * Номер загруженного снимка, растёт при каждой перезагрузке справочников.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    public Genre getGenre(int id) {
+        return snapshot.getGenre(id);
+    }
+
+    public List<Genre> getGenres() {
+        return snapshot.genres;
+    }
+
+    public MPA getMpa(int id) {
+        return snapshot.getMpa(id);
+    }
+
+    public List<MPA> getRatings() {
+        return snapshot.ratings;
+    }
+
+    private static final class Snapshot {
+        private final List<Genre> genres;
+        private final List<MPA> ratings;
+        private final Genre[] genresById;
+        private final MPA[] ratingsById;
+
+        private Snapshot(List<Genre> genres, List<MPA> ratings) {
+            this.genres = Collections.unmodifiableList(genres);
+            this.ratings = Collections.unmodifiableList(ratings);
+            this.genresById = new Genre[genres.stream().mapToInt(Genre::getId).max().orElse(0) + 1];
+            genres.forEach(genre -> genresById[genre.getId()] = genre);
+            this.ratingsById = new MPA[ratings.stream().mapToInt(MPA::getId).max().orElse(0) + 1];
+            ratings.forEach(mpa -> ratingsById[mpa.getId()] = mpa);
+        }
+
+        private Genre getGenre(int id) {
+            return id >= 0 && id < genresById.length ? genresById[id] : null;
+        }
+
+        private MPA getMpa(int id) {
+            return id >= 0 && id < ratingsById.length ? ratingsById[id] : null;
+        }
+    }
+}
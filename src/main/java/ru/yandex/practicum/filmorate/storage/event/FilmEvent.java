@@ -0,0 +1,19 @@
+package ru.yandex.practicum.filmorate.storage.event;
+
+import lombok.Value;
+import ru.yandex.practicum.filmorate.model.Film;
+
+@Value
+public class FilmEvent {
+    Long filmId;
+
+    Type type;
+
+    Film film;
+
+    public enum Type {
+        ADDED,
+        UPDATED,
+        DELETED
+    }
+}
@@ -0,0 +1,18 @@
+package ru.yandex.practicum.filmorate.storage.event;
+
+import lombok.Value;
+
+@Value
+public class FriendshipEvent {
+    Long userId;
+
+    Long friendId;
+
+    Type type;
+
+    public enum Type {
+        ADDED,
+        REMOVED,
+        USER_DELETED
+    }
+}
@@ -0,0 +1,12 @@
+package ru.yandex.practicum.filmorate.storage.event;
+
+import lombok.Value;
+
+@Value
+public class LikeEvent {
+    Long filmId;
+
+    Long userId;
+
+    boolean liked;
+}
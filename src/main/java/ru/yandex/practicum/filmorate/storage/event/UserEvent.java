@@ -0,0 +1,16 @@
+package ru.yandex.practicum.filmorate.storage.event;
+
+import lombok.Value;
+
+@Value
+public class UserEvent {
+    Long userId;
+
+    Type type;
+
+    public enum Type {
+        ADDED,
+        UPDATED,
+        DELETED
+    }
+}
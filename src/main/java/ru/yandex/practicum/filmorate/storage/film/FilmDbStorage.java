@@ -2,31 +2,60 @@ package ru.yandex.practicum.filmorate.storage.film;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.model.Genre;
 import ru.yandex.practicum.filmorate.model.MPA;
-import ru.yandex.practicum.filmorate.storage.genres.GenresStorage;
+import ru.yandex.practicum.filmorate.storage.MultiRowInsert;
+import ru.yandex.practicum.filmorate.storage.catalog.ReferenceDataCatalog;
+import ru.yandex.practicum.filmorate.storage.event.FilmEvent;
 
 import java.sql.Date;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Component("filmDbStorage")
+@ConditionalOnProperty(name = "filmorate.storage", havingValue = "db", matchIfMissing = true)
 @Slf4j
 @RequiredArgsConstructor
 public class FilmDbStorage implements FilmStorage {
-    public static final String GET_ALL_QUERY = "SELECT * FROM films join MPARatings on films.ratingMPAId = MPARatings.ratingMPAId";
-    public static final String GET_BY_ID_QUERY = "SELECT * FROM films join MPARatings on films.ratingMPAId = MPARatings.ratingMPAId WHERE id = ?";
+    public static final String GET_ALL_QUERY = "SELECT * FROM films";
+    public static final String GET_BY_ID_QUERY = "SELECT * FROM films WHERE id = ?";
+    public static final String GET_PAGE_QUERY = "SELECT * FROM films WHERE id > ? ORDER BY id LIMIT ?";
+    public static final String INSERT_FILMS_PREFIX =
+            "INSERT INTO films (name, description, releaseDate, duration, ratingMPAId) VALUES ";
+    public static final String FILM_VALUES = "(?, ?, ?, ?, ?)";
+    public static final int FILM_COLUMNS = 5;
+    public static final String INSERT_FILM_QUERY = INSERT_FILMS_PREFIX + FILM_VALUES;
+    public static final String INSERT_GENRES_PREFIX = "INSERT INTO genre (filmId, genreId) VALUES ";
+    public static final String GENRE_VALUES = "(?, ?)";
+    public static final String INSERT_GENRE_QUERY = INSERT_GENRES_PREFIX + GENRE_VALUES;
+    public static final String GET_GENRE_IDS_QUERY = "SELECT genreId FROM genre WHERE filmId = ?";
+    public static final String DELETE_GENRE_QUERY = "DELETE FROM genre WHERE filmId = ? AND genreId = ?";
+    public static final String STREAM_ALL_QUERY = "SELECT f.*, g.genreId FROM films f " +
+            "LEFT JOIN genre g ON f.id = g.filmId ORDER BY f.id, g.genreId";
+    public static final int STREAM_FETCH_SIZE = 500;
+    public static final String GET_POPULAR_QUERY = "SELECT * FROM films ORDER BY rate DESC, id LIMIT ?";
+    public static final String GET_ALL_GENRES_QUERY = "SELECT filmId, genreId FROM genre ORDER BY filmId, genreId";
+    public static final String GET_GENRES_BY_FILM_IDS_QUERY =
+            "SELECT filmId, genreId FROM genre WHERE filmId IN (%s) ORDER BY filmId, genreId";
 
     private final JdbcTemplate jdbcTemplate;
-    private final GenresStorage genreStorage;
+    private final ReferenceDataCatalog catalog;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate transactionTemplate;
 
     private Film rowMapFilm(ResultSet rs) throws SQLException {
         Long filmId = rs.getLong("id");
@@ -35,11 +64,9 @@ public class FilmDbStorage implements FilmStorage {
                 .description(rs.getString("description"))
                 .releaseDate(rs.getDate("releaseDate").toLocalDate())
                 .duration(rs.getInt("duration"))
-                .mpa(MPA.builder()
-                        .id(rs.getInt("ratingMPAId"))
-                        .name(rs.getString("RATINGNAME"))
-                        .build())
-                .genres(getGenresOfFilm(filmId))
+                .rate(rs.getInt("rate"))
+                .mpa(getMpa(rs.getInt("ratingMPAId")))
+                .genres(new LinkedHashSet<>())
                 .build();
         film.setId(filmId);
         return film;
@@ -47,7 +74,49 @@ public class FilmDbStorage implements FilmStorage {
 
     @Override
     public Collection<Film> getAll() {
-        return jdbcTemplate.query(GET_ALL_QUERY, (rs, rowNum) -> rowMapFilm(rs));
+        List<Film> films = jdbcTemplate.query(GET_ALL_QUERY, (rs, rowNum) -> rowMapFilm(rs));
+        if (!films.isEmpty()) {
+            Map<Long, Film> filmsById = films.stream()
+                    .collect(Collectors.toMap(Film::getId, Function.identity()));
+            jdbcTemplate.query(GET_ALL_GENRES_QUERY, rs -> {
+                addGenreRow(filmsById, rs);
+            });
+        }
+        return films;
+    }
+
+    @Override
+    public List<Film> getPage(Long after, int limit) {
+        List<Film> films = jdbcTemplate.query(GET_PAGE_QUERY, (rs, rowNum) -> rowMapFilm(rs),
+                after == null ? 0 : after, limit);
+        loadGenres(films);
+        return films;
+    }
+
+    @Override
+    public void streamAll(Consumer<? super Film> action) {
+        Film[] current = new Film[1];
+        jdbcTemplate.query(connection -> {
+            PreparedStatement stmt = connection.prepareStatement(STREAM_ALL_QUERY,
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            stmt.setFetchSize(STREAM_FETCH_SIZE);
+            return stmt;
+        }, rs -> {
+            long filmId = rs.getLong("id");
+            if (current[0] == null || current[0].getId() != filmId) {
+                if (current[0] != null) {
+                    action.accept(current[0]);
+                }
+                current[0] = rowMapFilm(rs);
+            }
+            Genre genre = catalog.getGenre(rs.getInt("genreId"));
+            if (genre != null) {
+                current[0].getGenres().add(genre);
+            }
+        });
+        if (current[0] != null) {
+            action.accept(current[0]);
+        }
     }
 
     @Override
@@ -57,23 +126,79 @@ public class FilmDbStorage implements FilmStorage {
             log.info("Фильма с идентификатором {} нет.", id);
             return Optional.empty();
         }
+        loadGenres(films);
         log.info("В базе данных найден фильм: {}", films.get(0));
         return Optional.of(films.get(0));
     }
 
     @Override
+    public List<Film> getByIds(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        String sqlQueryGetByIds = String.format("SELECT * FROM films WHERE id IN (%s)",
+                String.join(",", Collections.nCopies(ids.size(), "?")));
+        List<Film> films = jdbcTemplate.query(sqlQueryGetByIds, (rs, rowNum) -> rowMapFilm(rs), ids.toArray());
+        loadGenres(films);
+        Map<Long, Film> filmsById = films.stream()
+                .collect(Collectors.toMap(Film::getId, Function.identity()));
+        return ids.stream()
+                .map(filmsById::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public List<Film> getPopular(int count) {
+        List<Film> films = jdbcTemplate.query(GET_POPULAR_QUERY, (rs, rowNum) -> rowMapFilm(rs), count);
+        loadGenres(films);
+        return films;
+    }
+
+    @Override
+    public boolean exists(Long id) {
+        if (id == null) {
+            return false;
+        }
+        String sqlQueryExists = "SELECT EXISTS(SELECT 1 FROM films WHERE id = ?)";
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(sqlQueryExists, Boolean.class, id));
+    }
+
+    @Override
+    public boolean existsAll(Collection<Long> ids) {
+        Set<Long> distinctIds = new HashSet<>(ids);
+        if (distinctIds.contains(null)) {
+            return false;
+        }
+        if (distinctIds.isEmpty()) {
+            return true;
+        }
+        String sqlQueryCount = String.format("SELECT COUNT(*) FROM films WHERE id IN (%s)",
+                String.join(",", Collections.nCopies(distinctIds.size(), "?")));
+        Integer count = jdbcTemplate.queryForObject(sqlQueryCount, Integer.class, distinctIds.toArray());
+        return count != null && count == distinctIds.size();
+    }
+
+    @Override
+    public Set<Long> findExisting(Collection<Long> ids) {
+        Set<Long> distinctIds = ids.stream()
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+        if (distinctIds.isEmpty()) {
+            return new HashSet<>();
+        }
+        String sqlQueryIds = String.format("SELECT id FROM films WHERE id IN (%s)",
+                String.join(",", Collections.nCopies(distinctIds.size(), "?")));
+        return new HashSet<>(jdbcTemplate.queryForList(sqlQueryIds, Long.class, distinctIds.toArray()));
+    }
+
+    @Override
+    @Transactional
     public Film add(Film film) {
-        String filmSqlQuery =
-                "INSERT INTO films (name, description, releaseDate, duration, ratingMPAId) " +
-                        "VALUES (?, ?, ?, ?, ?)";
         KeyHolder keyHolder = new GeneratedKeyHolder();
         int updatedRowsCount = jdbcTemplate.update(connection -> {
-            PreparedStatement stmt = connection.prepareStatement(filmSqlQuery, new String[]{"id"});
-            stmt.setString(1, film.getName());
-            stmt.setString(2, film.getDescription());
-            stmt.setDate(3, Date.valueOf(film.getReleaseDate()));
-            stmt.setInt(4, film.getDuration());
-            stmt.setInt(5, film.getMpa().getId());
+            PreparedStatement stmt = connection.prepareStatement(INSERT_FILM_QUERY, new String[]{"id"});
+            setFilmParameters(stmt, 0, film);
             return stmt;
         }, keyHolder);
 
@@ -82,34 +207,65 @@ public class FilmDbStorage implements FilmStorage {
             return null;
         }
         Long filmId = Objects.requireNonNull(keyHolder.getKey()).longValue();
-        if (film.getGenres() == null) {
-            Film createdFilm = getById(filmId).orElse(null);
-            log.info("Фильм {} добавлен в базу данных", createdFilm);
-            return createdFilm;
+        List<Integer> genreIds = getGenreIds(film);
+        if (!genreIds.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_GENRE_QUERY, genreIds, genreIds.size(), (ps, genreId) -> {
+                ps.setLong(1, filmId);
+                ps.setInt(2, genreId);
+            });
         }
 
-        String genreSqlQuery =
-                "INSERT INTO genre (filmId, genreId) " +
-                        "VALUES (?, ?)";
-
-        film.getGenres().forEach(genre -> {
-            jdbcTemplate.update(genreSqlQuery,
-                    filmId,
-                    genre.getId());
-        });
-
-        Film createdFilm = getById(filmId).orElse(null);
+        Film createdFilm = buildSavedFilm(filmId, film, 0, genreIds);
         log.info("Фильм {} добавлен в базу данных", createdFilm);
+        eventPublisher.publishEvent(new FilmEvent(filmId, FilmEvent.Type.ADDED, createdFilm));
         return createdFilm;
     }
 
+    /**
+     * Строки пишутся в отдельной транзакции, а события ADDED публикуются после её фиксации. Внутри
+     * транзакции каждое событие регистрировало бы синхронизацию на каждого слушателя, и фиксация
+     * пакета сортировала и обходила бы сотни тысяч синхронизаций. Если вызов идёт внутри внешней
+     * транзакции, слушатели, как и раньше, дождутся её фиксации.
+     */
     @Override
+    public List<Film> addAll(List<Film> films) {
+        if (films.isEmpty()) {
+            return new ArrayList<>();
+        }
+        List<Film> createdFilms = Objects.requireNonNull(transactionTemplate.execute(status -> insertAll(films)));
+        createdFilms.forEach(film ->
+                eventPublisher.publishEvent(new FilmEvent(film.getId(), FilmEvent.Type.ADDED, film)));
+        log.info("В базу данных добавлено фильмов: {}", createdFilms.size());
+        return createdFilms;
+    }
+
+    private List<Film> insertAll(List<Film> films) {
+        List<Film> createdFilms = new ArrayList<>(films.size());
+        List<Long> filmIds = MultiRowInsert.insertReturningKeys(jdbcTemplate, INSERT_FILMS_PREFIX, FILM_VALUES,
+                FILM_COLUMNS, films, this::setFilmParameters);
+
+        List<long[]> genreRows = new ArrayList<>();
+        for (int i = 0; i < films.size(); i++) {
+            Long filmId = filmIds.get(i);
+            List<Integer> genreIds = getGenreIds(films.get(i));
+            genreIds.forEach(genreId -> genreRows.add(new long[]{filmId, genreId}));
+            createdFilms.add(buildSavedFilm(filmId, films.get(i), 0, genreIds));
+        }
+        MultiRowInsert.insert(jdbcTemplate, INSERT_GENRES_PREFIX, GENRE_VALUES, 2, genreRows, (ps, offset, row) -> {
+            ps.setLong(offset + 1, row[0]);
+            ps.setInt(offset + 2, (int) row[1]);
+        });
+        return createdFilms;
+    }
+
+    @Override
+    @Transactional
     public Optional<Film> update(Film film) {
         String filmSqlQuery =
-                "UPDATE films " +
+                "SELECT rate FROM FINAL TABLE (UPDATE films " +
                         "SET name = ?, description = ?, releaseDate = ?, duration = ?, ratingMPAId = ? " +
-                        "WHERE id = ?";
-        int updatedRowsCount = jdbcTemplate.update(filmSqlQuery,
+                        "WHERE id = ?)";
+        List<Integer> updatedRates = jdbcTemplate.queryForList(filmSqlQuery, Integer.class,
                 film.getName(),
                 film.getDescription(),
                 Date.valueOf(film.getReleaseDate()),
@@ -117,49 +273,112 @@ public class FilmDbStorage implements FilmStorage {
                 film.getMpa().getId(),
                 film.getId());
 
-        if (updatedRowsCount == 0) {
+        if (updatedRates.isEmpty()) {
             log.info("Фильма с идентификатором {} нет.", film.getId());
             return Optional.empty();
         }
 
-        String genreDeleteSqlQuery =
-                "DELETE FROM genre " +
-                        "WHERE filmId = ?";
-
-        jdbcTemplate.update(genreDeleteSqlQuery, film.getId());
-
-        if (film.getGenres() == null) {
-            Optional<Film> updatedFilm = this.getById(film.getId());
-            log.info("Фильм {} обновлен в базе данных", updatedFilm);
-            return updatedFilm;
-        }
-
-        String genreSqlQuery =
-                "INSERT INTO genre (filmId, genreId) " + "VALUES (?, ?)";
-        film.getGenres().forEach(genre -> {
-            jdbcTemplate.update(genreSqlQuery,
-                    film.getId(),
-                    genre.getId());
-        });
-        Optional<Film> updatedFilm = this.getById(film.getId());
+        List<Integer> genreIds = getGenreIds(film);
+        updateGenres(film.getId(), genreIds);
+        Film updatedFilm = buildSavedFilm(film.getId(), film, updatedRates.get(0), genreIds);
         log.info("Фильм {} обновлен в базе данных", updatedFilm);
-        return updatedFilm;
+        eventPublisher.publishEvent(new FilmEvent(film.getId(), FilmEvent.Type.UPDATED, updatedFilm));
+        return Optional.of(updatedFilm);
     }
 
     @Override
+    @Transactional
     public void delete(Long id) {
         if (id == null) {
             return;
         }
         String sqlQueryDelete = "DELETE FROM films WHERE id = ?";
-        jdbcTemplate.update(sqlQueryDelete, id);
+        if (jdbcTemplate.update(sqlQueryDelete, id) > 0) {
+            eventPublisher.publishEvent(new FilmEvent(id, FilmEvent.Type.DELETED, null));
+        }
+    }
+
+    private void setFilmParameters(PreparedStatement stmt, int offset, Film film) throws SQLException {
+        stmt.setString(offset + 1, film.getName());
+        stmt.setString(offset + 2, film.getDescription());
+        stmt.setDate(offset + 3, Date.valueOf(film.getReleaseDate()));
+        stmt.setInt(offset + 4, film.getDuration());
+        stmt.setInt(offset + 5, film.getMpa().getId());
+    }
+
+    private List<Integer> getGenreIds(Film film) {
+        if (film.getGenres() == null) {
+            return new ArrayList<>();
+        }
+        return film.getGenres().stream()
+                .map(Genre::getId)
+                .distinct()
+                .collect(Collectors.toList());
+    }
+
+    private Film buildSavedFilm(Long filmId, Film film, int rate, List<Integer> genreIds) {
+        return Film.builder()
+                .id(filmId)
+                .name(film.getName())
+                .description(film.getDescription())
+                .releaseDate(film.getReleaseDate())
+                .duration(film.getDuration())
+                .mpa(getMpa(film.getMpa().getId()))
+                .rate(rate)
+                .genres(genreIds.stream()
+                        .sorted()
+                        .map(catalog::getGenre)
+                        .filter(Objects::nonNull)
+                        .collect(Collectors.toCollection(LinkedHashSet::new)))
+                .build();
+    }
+
+    /**
+     * Сравнивает жанры фильма с сохранёнными и пишет только разницу; без изменений в genre не пишет.
+     */
+    private void updateGenres(Long filmId, List<Integer> genreIds) {
+        Set<Integer> stored = new HashSet<>(jdbcTemplate.queryForList(GET_GENRE_IDS_QUERY, Integer.class, filmId));
+        List<Integer> added = genreIds.stream()
+                .filter(genreId -> !stored.contains(genreId))
+                .collect(Collectors.toList());
+        stored.removeAll(genreIds);
+        List<Integer> removed = new ArrayList<>(stored);
+        if (!removed.isEmpty()) {
+            jdbcTemplate.batchUpdate(DELETE_GENRE_QUERY, removed, removed.size(), (ps, genreId) -> {
+                ps.setLong(1, filmId);
+                ps.setInt(2, genreId);
+            });
+        }
+        if (!added.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_GENRE_QUERY, added, added.size(), (ps, genreId) -> {
+                ps.setLong(1, filmId);
+                ps.setInt(2, genreId);
+            });
+        }
+    }
+
+    private void loadGenres(List<Film> films) {
+        if (films.isEmpty()) {
+            return;
+        }
+        Map<Long, Film> filmsById = films.stream()
+                .collect(Collectors.toMap(Film::getId, Function.identity(), (first, second) -> first));
+        String placeholders = String.join(",", Collections.nCopies(filmsById.size(), "?"));
+        jdbcTemplate.query(String.format(GET_GENRES_BY_FILM_IDS_QUERY, placeholders), rs -> {
+            addGenreRow(filmsById, rs);
+        }, filmsById.keySet().toArray());
+    }
+
+    private void addGenreRow(Map<Long, Film> filmsById, ResultSet rs) throws SQLException {
+        Film film = filmsById.get(rs.getLong("filmId"));
+        Genre genre = catalog.getGenre(rs.getInt("genreId"));
+        if (film != null && genre != null) {
+            film.getGenres().add(genre);
+        }
     }
 
-    private LinkedHashSet<Genre> getGenresOfFilm(Long filmId) {
-        String sqlQueryGetGenres = "SELECT genreId FROM genre WHERE filmId = ?";
-        return jdbcTemplate.queryForList(sqlQueryGetGenres, Integer.class, filmId)
-                .stream()
-                .map(genreStorage::getGenreById)
-                .collect(Collectors.toCollection(LinkedHashSet::new));
+    private MPA getMpa(int mpaId) {
+        MPA mpa = catalog.getMpa(mpaId);
+        return mpa != null ? mpa : MPA.builder().id(mpaId).build();
     }
 }
\ No newline at end of file
@@ -1,77 +1,207 @@
 package ru.yandex.practicum.filmorate.storage.film;
 
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.http.HttpStatus;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Component;
-import org.springframework.web.server.ResponseStatusException;
+import ru.yandex.practicum.filmorate.error.exception.NullException;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.MPA;
+import ru.yandex.practicum.filmorate.storage.catalog.ReferenceDataCatalog;
+import ru.yandex.practicum.filmorate.storage.event.FilmEvent;
 
-import javax.validation.Valid;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 @Component
+@ConditionalOnProperty(name = "filmorate.storage", havingValue = "memory")
 @Slf4j
+@RequiredArgsConstructor
 public class InMemoryFilmStorage implements FilmStorage {
-    private final HashMap<Long, Film> filmHashMap = new HashMap<>();
-    private Long id = 0L;
+    private final ConcurrentNavigableMap<Long, Film> films = new ConcurrentSkipListMap<>();
+    private final AtomicLong idSequence = new AtomicLong();
 
+    private final ReferenceDataCatalog catalog;
+    private final ApplicationEventPublisher eventPublisher;
 
     @Override
-    public Film add(@Valid Film film) {
-        if (film != null) {
-            film.setId(++id);
-            filmHashMap.put(film.getId(), film);
-            log.info("Фильм добавлен");
-            return film;
+    public Film add(Film film) {
+        if (film == null) {
+            throw new NullException("Фильм не может быть null");
         }
-        log.info("Объект фильм был null");
-        throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR);
+        Film createdFilm = buildSavedFilm(idSequence.incrementAndGet(), film, 0);
+        films.put(createdFilm.getId(), createdFilm);
+        log.info("Фильм {} добавлен", createdFilm);
+        eventPublisher.publishEvent(new FilmEvent(createdFilm.getId(), FilmEvent.Type.ADDED, copy(createdFilm)));
+        return copy(createdFilm);
     }
 
+    /**
+     * Добавляет фильмы целиком или никакой: все фильмы собираются до первой записи в хранилище,
+     * события публикуются после записи всего пакета.
+     */
     @Override
-    public Optional<Film> update(@Valid Film film) {
-        if (film != null) {
-            if (filmHashMap.containsKey(film.getId())) {
-                filmHashMap.put(film.getId(), film);
-                log.info("Фильм обновлен");
-                return Optional.of(film);
+    public List<Film> addAll(List<Film> films) {
+        List<Film> createdFilms = new ArrayList<>(films.size());
+        for (Film film : films) {
+            if (film == null) {
+                throw new NullException("Фильм не может быть null");
             }
-            log.info("Фильм " + film.getId() + " не найден");
-            throw new ResponseStatusException(HttpStatus.NOT_FOUND);
+            createdFilms.add(buildSavedFilm(idSequence.incrementAndGet(), film, 0));
         }
-        log.info("Объект пользователь был null");
-        throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR);
+        createdFilms.forEach(film -> this.films.put(film.getId(), film));
+        log.info("Добавлено фильмов: {}", createdFilms.size());
+        List<Film> addedFilms = new ArrayList<>(createdFilms.size());
+        for (Film film : createdFilms) {
+            eventPublisher.publishEvent(new FilmEvent(film.getId(), FilmEvent.Type.ADDED, copy(film)));
+            addedFilms.add(copy(film));
+        }
+        return addedFilms;
+    }
+
+    @Override
+    public Optional<Film> update(Film film) {
+        if (film == null) {
+            throw new NullException("Фильм не может быть null");
+        }
+        Film updatedFilm = film.getId() == null ? null : films.computeIfPresent(film.getId(),
+                (id, storedFilm) -> buildSavedFilm(id, film, storedFilm.getRate()));
+        if (updatedFilm == null) {
+            log.info("Фильма с идентификатором {} нет.", film.getId());
+            return Optional.empty();
+        }
+        log.info("Фильм {} обновлен", updatedFilm);
+        eventPublisher.publishEvent(new FilmEvent(updatedFilm.getId(), FilmEvent.Type.UPDATED, copy(updatedFilm)));
+        return Optional.of(copy(updatedFilm));
+    }
+
+    /**
+     * Атомарно изменяет рейтинг фильма; используется хранилищем лайков вместо UPDATE films SET rate.
+     */
+    public boolean addRate(Long id, int delta) {
+        return films.computeIfPresent(id, (filmId, film) -> {
+            Film ratedFilm = copy(film);
+            ratedFilm.setRate(film.getRate() + delta);
+            return ratedFilm;
+        }) != null;
+    }
+
+    @Override
+    public List<Film> getPage(Long after, int limit) {
+        return films.tailMap(after == null ? 0 : after, false).values().stream()
+                .limit(limit)
+                .map(this::copy)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public void streamAll(Consumer<? super Film> action) {
+        films.values().forEach(film -> action.accept(copy(film)));
     }
 
     @Override
     public Optional<Film> getById(Long id) {
-        if (filmHashMap.containsKey(id)) {
-            return Optional.of(filmHashMap.get(id));
+        Film film = id == null ? null : films.get(id);
+        if (film == null) {
+            log.info("Фильма с идентификатором {} нет.", id);
+            return Optional.empty();
         }
-        log.info("Фильм " + id + " не найден");
-        throw new ResponseStatusException(HttpStatus.NOT_FOUND);
+        return Optional.of(copy(film));
+    }
+
+    @Override
+    public List<Film> getByIds(List<Long> ids) {
+        return ids.stream()
+                .filter(Objects::nonNull)
+                .map(films::get)
+                .filter(Objects::nonNull)
+                .map(this::copy)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public List<Film> getPopular(int count) {
+        return films.values().stream()
+                .sorted(Comparator.comparingInt(Film::getRate).reversed().thenComparing(Film::getId))
+                .limit(count)
+                .map(this::copy)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public boolean exists(Long id) {
+        return id != null && films.containsKey(id);
+    }
+
+    @Override
+    public boolean existsAll(Collection<Long> ids) {
+        return ids.stream().allMatch(this::exists);
+    }
+
+    @Override
+    public Set<Long> findExisting(Collection<Long> ids) {
+        return ids.stream()
+                .filter(this::exists)
+                .collect(Collectors.toSet());
     }
 
     @Override
     public void delete(Long id) {
-        if (filmHashMap.containsKey(id)) {
-            filmHashMap.remove(id);
-        } else {
-            log.info("Фильм " + id + " не найден");
-            throw new ResponseStatusException(HttpStatus.NOT_FOUND);
+        if (id != null && films.remove(id) != null) {
+            eventPublisher.publishEvent(new FilmEvent(id, FilmEvent.Type.DELETED, null));
         }
     }
 
     @Override
     public Collection<Film> getAll() {
-        return new ArrayList<>(filmHashMap.values());
+        return films.values().stream()
+                .map(this::copy)
+                .collect(Collectors.toList());
     }
 
+    private Film buildSavedFilm(Long filmId, Film film, int rate) {
+        MPA mpa = catalog.getMpa(film.getMpa().getId());
+        return Film.builder()
+                .id(filmId)
+                .name(film.getName())
+                .description(film.getDescription())
+                .releaseDate(film.getReleaseDate())
+                .duration(film.getDuration())
+                .mpa(mpa != null ? mpa : MPA.builder().id(film.getMpa().getId()).build())
+                .rate(rate)
+                .genres(film.getGenres() == null ? new LinkedHashSet<>() : film.getGenres().stream()
+                        .map(Genre::getId)
+                        .distinct()
+                        .sorted()
+                        .map(catalog::getGenre)
+                        .filter(Objects::nonNull)
+                        .collect(Collectors.toCollection(LinkedHashSet::new)))
+                .build();
+    }
 
-    public Boolean contains(Long id) {
-        return filmHashMap.containsKey(id);
+    private Film copy(Film film) {
+        return Film.builder()
+                .id(film.getId())
+                .name(film.getName())
+                .description(film.getDescription())
+                .releaseDate(film.getReleaseDate())
+                .duration(film.getDuration())
+                .mpa(film.getMpa())
+                .rate(film.getRate())
+                .genres(new LinkedHashSet<>(film.getGenres()))
+                .build();
     }
 }
@@ -0,0 +1,329 @@
+package ru.yandex.practicum.filmorate.storage.likes;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.context.annotation.Primary;
+import org.springframework.dao.NonTransientDataAccessException;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.dao.TransientDataAccessResourceException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.filmorate.model.Like;
+import ru.yandex.practicum.filmorate.storage.event.FilmEvent;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Буфер отложенной записи лайков перед {@link LikesDbStorage}. Операции над одной парой
+ * (фильм, пользователь) схлопываются: в БД попадает только последнее состояние пары.
+ * Буфер сбрасывается пакетом в одной транзакции раз в flush-interval-ms; когда накопилось
+ * max-pending операций, сброс сразу запускается в фоновом потоке, а новая операция ждёт места
+ * в буфере не дольше max-wait-ms и иначе отклоняется. Операция над парой, уже лежащей
+ * в буфере, принимается всегда: она только заменяет предыдущую. Чтение лайков конкретного
+ * фильма учитывает несброшенные операции; агрегирующие чтения сначала сбрасывают буфер.
+ * Всё остальное видит лайк только после сброса: события {@code LikeEvent} публикует
+ * {@link LikesDbStorage} при записи пакета, поэтому films.rate, индекс популярности, кэши
+ * фильмов и версии ETag отстают от принятой операции на время до flush-interval-ms.
+ * Если пакет не записался, операции записываются по одной: временные ошибки БД возвращают
+ * оставшиеся операции в буфер, а операцию, которую БД отвергает как некорректную или которая
+ * не записалась MAX_ATTEMPTS раз подряд, буфер отбрасывает с записью в лог. Клиент к этому
+ * времени уже получил успешный ответ, поэтому каждая отброшенная операция считается в
+ * filmorate.likes.write-behind.dropped. Операции над удалённым фильмом отбрасываются
+ * по событию удаления, чтобы сброс не записал лайк фильму, которого уже нет.
+ */
+@Slf4j
+@Primary
+@Component
+@ConditionalOnExpression("${filmorate.likes.write-behind.enabled:false} and '${filmorate.storage:db}' == 'db'")
+public class BufferedLikesStorage implements LikesStorage {
+    private static final int MAX_ATTEMPTS = 3;
+
+    private final LikesStorage delegate;
+    private final TransactionTemplate transactionTemplate;
+    private final int maxPending;
+    private final long maxWaitNanos;
+    private final Object space = new Object();
+    private final ConcurrentMap<Like, Boolean> pending = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Like, Boolean> inFlight = new ConcurrentHashMap<>();
+    private final Map<Like, Integer> attempts = new HashMap<>();
+    private final ScheduledExecutorService flusher;
+    private final MeterRegistry meterRegistry;
+
+    public BufferedLikesStorage(@Qualifier("LikesDbStorage") LikesStorage delegate,
+                                PlatformTransactionManager transactionManager,
+                                MeterRegistry meterRegistry,
+                                @Value("${filmorate.likes.write-behind.flush-interval-ms:50}") long flushIntervalMs,
+                                @Value("${filmorate.likes.write-behind.max-pending:1000}") int maxPending,
+                                @Value("${filmorate.likes.write-behind.max-wait-ms:100}") long maxWaitMs) {
+        this.delegate = delegate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.meterRegistry = meterRegistry;
+        this.maxPending = maxPending;
+        this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxWaitMs);
+        this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "likes-write-behind");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void addLike(Long id, Long userId) {
+        enqueue(new Like(id, userId), true);
+    }
+
+    @Override
+    public void removeLike(Long idFilm, Long userId) {
+        enqueue(new Like(idFilm, userId), false);
+    }
+
+    @Override
+    public List<Boolean> addLikes(List<Like> likes) {
+        flush();
+        return delegate.addLikes(likes);
+    }
+
+    @Override
+    public List<Boolean> removeLikes(List<Like> likes) {
+        flush();
+        return delegate.removeLikes(likes);
+    }
+
+    @Override
+    public Integer getAmountOfLikes(Long filmId, Long userId) {
+        Boolean liked = getUnflushed(new Like(filmId, userId));
+        if (liked != null) {
+            return liked ? 1 : 0;
+        }
+        return delegate.getAmountOfLikes(filmId, userId);
+    }
+
+    @Override
+    public Set<Integer> getLikesByFilmId(Long filmId) {
+        Map<Long, Boolean> unflushed = new HashMap<>();
+        collectUnflushed(inFlight, filmId, unflushed);
+        collectUnflushed(pending, filmId, unflushed);
+        Set<Integer> likes = new HashSet<>(delegate.getLikesByFilmId(filmId));
+        unflushed.forEach((userId, liked) -> {
+            if (liked) {
+                likes.add(userId.intValue());
+            } else {
+                likes.remove(userId.intValue());
+            }
+        });
+        return likes;
+    }
+
+    @Override
+    public Map<Long, Long> getLikeCounts() {
+        flush();
+        return delegate.getLikeCounts();
+    }
+
+    @Override
+    public void streamLikes(Consumer<Like> action) {
+        flush();
+        delegate.streamLikes(action);
+    }
+
+    @Override
+    public Set<Long> getTopFilmLikes(Integer count) {
+        flush();
+        return delegate.getTopFilmLikes(count);
+    }
+
+    public synchronized void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        List<Like> likes = new ArrayList<>();
+        List<Like> unlikes = new ArrayList<>();
+        for (Map.Entry<Like, Boolean> entry : pending.entrySet()) {
+            Like like = entry.getKey();
+            Boolean liked = entry.getValue();
+            inFlight.put(like, liked);
+            if (pending.remove(like, liked)) {
+                (liked ? likes : unlikes).add(like);
+            } else {
+                inFlight.remove(like, liked);
+            }
+        }
+        synchronized (space) {
+            space.notifyAll();
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                if (!likes.isEmpty()) {
+                    delegate.addLikes(likes);
+                }
+                if (!unlikes.isEmpty()) {
+                    delegate.removeLikes(unlikes);
+                }
+            });
+            attempts.clear();
+        } catch (RuntimeException e) {
+            log.warn("Не удалось записать пакет из {} лайков и {} отмен, операции записываются по одной",
+                    likes.size(), unlikes.size(), e);
+            Map<Like, Boolean> operations = new LinkedHashMap<>();
+            likes.forEach(like -> operations.put(like, Boolean.TRUE));
+            unlikes.forEach(like -> operations.put(like, Boolean.FALSE));
+            if (!applyOneByOne(operations)) {
+                throw e;
+            }
+        } finally {
+            likes.forEach(like -> inFlight.remove(like, Boolean.TRUE));
+            unlikes.forEach(like -> inFlight.remove(like, Boolean.FALSE));
+        }
+        log.debug("Записано лайков: {}, отмен: {}", likes.size(), unlikes.size());
+    }
+
+    /**
+     * Записывает операции по одной, каждую в своей транзакции.
+     *
+     * @return true, если в буфер не вернулась ни одна операция
+     */
+    private boolean applyOneByOne(Map<Like, Boolean> operations) {
+        boolean applied = true;
+        Iterator<Map.Entry<Like, Boolean>> iterator = operations.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Like, Boolean> operation = iterator.next();
+            Like like = operation.getKey();
+            Boolean liked = operation.getValue();
+            try {
+                transactionTemplate.executeWithoutResult(status -> {
+                    if (liked) {
+                        delegate.addLike(like.getFilmId(), like.getUserId());
+                    } else {
+                        delegate.removeLike(like.getFilmId(), like.getUserId());
+                    }
+                });
+                attempts.remove(like);
+            } catch (TransientDataAccessException | RecoverableDataAccessException e) {
+                log.error("БД недоступна, {} операций с лайками возвращены в буфер", operations.size(), e);
+                operations.forEach(pending::putIfAbsent);
+                return false;
+            } catch (NonTransientDataAccessException e) {
+                attempts.remove(like);
+                dropped("rejected");
+                log.error("Операция «{}» над лайком {} отвергнута БД и отброшена",
+                        liked ? "поставить" : "снять", like, e);
+            } catch (RuntimeException e) {
+                int attempt = attempts.merge(like, 1, Integer::sum);
+                if (attempt >= MAX_ATTEMPTS) {
+                    attempts.remove(like);
+                    dropped("retries");
+                    log.error("Операция «{}» над лайком {} не записалась {} раз и отброшена",
+                            liked ? "поставить" : "снять", like, attempt, e);
+                } else {
+                    log.warn("Операция «{}» над лайком {} не записалась, попытка {} из {}",
+                            liked ? "поставить" : "снять", like, attempt, MAX_ATTEMPTS, e);
+                    pending.putIfAbsent(like, liked);
+                    applied = false;
+                }
+            }
+            iterator.remove();
+        }
+        return applied;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onFilm(FilmEvent event) {
+        if (event.getType() != FilmEvent.Type.DELETED) {
+            return;
+        }
+        pending.forEach((like, liked) -> {
+            if (like.getFilmId().equals(event.getFilmId()) && pending.remove(like, liked)) {
+                log.info("Фильм {} удалён, операция над лайком {} отброшена", event.getFilmId(), like);
+                dropped("film_deleted");
+            }
+        });
+    }
+
+    private void dropped(String reason) {
+        Counter.builder("filmorate.likes.write-behind.dropped")
+                .description("Принятые операции с лайками, отброшенные буфером без записи в БД")
+                .tag("reason", reason)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+    }
+
+    private void enqueue(Like like, boolean liked) {
+        if (pending.size() >= maxPending && !pending.containsKey(like)) {
+            awaitSpace();
+        }
+        pending.put(like, liked);
+    }
+
+    private void awaitSpace() {
+        flusher.execute(this::flushQuietly);
+        long deadline = System.nanoTime() + maxWaitNanos;
+        synchronized (space) {
+            while (pending.size() >= maxPending) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    throw new TransientDataAccessResourceException("Буфер лайков переполнен, операция отклонена");
+                }
+                try {
+                    TimeUnit.NANOSECONDS.timedWait(space, remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new TransientDataAccessResourceException("Ожидание места в буфере лайков прервано");
+                }
+            }
+        }
+    }
+
+    private Boolean getUnflushed(Like like) {
+        Boolean liked = pending.get(like);
+        return liked != null ? liked : inFlight.get(like);
+    }
+
+    private void collectUnflushed(Map<Like, Boolean> operations, Long filmId, Map<Long, Boolean> unflushed) {
+        operations.forEach((like, liked) -> {
+            if (like.getFilmId().equals(filmId)) {
+                unflushed.put(like.getUserId(), liked);
+            }
+        });
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            log.debug("Сброс буфера лайков будет повторен", e);
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package ru.yandex.practicum.filmorate.storage.likes;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Like;
+import ru.yandex.practicum.filmorate.storage.event.FilmEvent;
+import ru.yandex.practicum.filmorate.storage.event.LikeEvent;
+import ru.yandex.practicum.filmorate.storage.film.InMemoryFilmStorage;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "filmorate.storage", havingValue = "memory")
+@RequiredArgsConstructor
+public class InMemoryLikesStorage implements LikesStorage {
+
+    private final ConcurrentMap<Long, Set<Long>> likes = new ConcurrentHashMap<>();
+
+    private final InMemoryFilmStorage filmStorage;
+    private final ApplicationEventPublisher eventPublisher;
+
+    @Override
+    public Set<Integer> getLikesByFilmId(Long filmId) {
+        return likes.getOrDefault(filmId, Set.of()).stream()
+                .map(Long::intValue)
+                .collect(Collectors.toSet());
+    }
+
+    @Override
+    public void removeLike(Long idFilm, Long userId) {
+        Set<Long> userIds = likes.get(idFilm);
+        if (userIds != null && userIds.remove(userId)) {
+            filmStorage.addRate(idFilm, -1);
+            eventPublisher.publishEvent(new LikeEvent(idFilm, userId, false));
+        }
+    }
+
+    @Override
+    public void addLike(Long id, Long userId) {
+        if (likes.computeIfAbsent(id, filmId -> ConcurrentHashMap.newKeySet()).add(userId)) {
+            filmStorage.addRate(id, 1);
+            eventPublisher.publishEvent(new LikeEvent(id, userId, true));
+        } else {
+            log.info("Лайк пользователя {} фильму {} уже поставлен", userId, id);
+        }
+    }
+
+    @Override
+    public List<Boolean> addLikes(List<Like> likes) {
+        List<Boolean> added = new ArrayList<>(likes.size());
+        for (Like like : likes) {
+            boolean isAdded = this.likes.computeIfAbsent(like.getFilmId(), filmId -> ConcurrentHashMap.newKeySet())
+                    .add(like.getUserId());
+            if (isAdded) {
+                filmStorage.addRate(like.getFilmId(), 1);
+                eventPublisher.publishEvent(new LikeEvent(like.getFilmId(), like.getUserId(), true));
+            }
+            added.add(isAdded);
+        }
+        return added;
+    }
+
+    @Override
+    public List<Boolean> removeLikes(List<Like> likes) {
+        List<Boolean> removed = new ArrayList<>(likes.size());
+        for (Like like : likes) {
+            Set<Long> userIds = this.likes.get(like.getFilmId());
+            boolean isRemoved = userIds != null && userIds.remove(like.getUserId());
+            if (isRemoved) {
+                filmStorage.addRate(like.getFilmId(), -1);
+                eventPublisher.publishEvent(new LikeEvent(like.getFilmId(), like.getUserId(), false));
+            }
+            removed.add(isRemoved);
+        }
+        return removed;
+    }
+
+    @Override
+    public Integer getAmountOfLikes(Long filmId, Long userId) {
+        return likes.getOrDefault(filmId, Set.of()).contains(userId) ? 1 : 0;
+    }
+
+    @Override
+    public Map<Long, Long> getLikeCounts() {
+        Map<Long, Long> counts = new HashMap<>();
+        filmStorage.streamAll(film ->
+                counts.put(film.getId(), (long) likes.getOrDefault(film.getId(), Set.of()).size()));
+        return counts;
+    }
+
+    @Override
+    public void streamLikes(Consumer<Like> action) {
+        likes.forEach((filmId, userIds) -> userIds.forEach(userId -> action.accept(new Like(filmId, userId))));
+    }
+
+    @Override
+    public Set<Long> getTopFilmLikes(Integer count) {
+        return filmStorage.getPopular(count).stream()
+                .map(Film::getId)
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+    }
+
+    @EventListener
+    public void onFilm(FilmEvent event) {
+        if (event.getType() == FilmEvent.Type.DELETED) {
+            likes.remove(event.getFilmId());
+        }
+    }
+}
@@ -2,21 +2,46 @@ package ru.yandex.practicum.filmorate.storage.likes;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import ru.yandex.practicum.filmorate.model.Like;
+import ru.yandex.practicum.filmorate.storage.event.LikeEvent;
 
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 @Slf4j
 @Component("LikesDbStorage")
+@ConditionalOnProperty(name = "filmorate.storage", havingValue = "db", matchIfMissing = true)
 @RequiredArgsConstructor
 public class LikesDbStorage implements LikesStorage {
 
+    private static final String ADD_LIKE_QUERY = "INSERT INTO filmLikes(filmId, userId) SELECT ?, ? FROM DUAL " +
+            "WHERE NOT EXISTS (SELECT 1 FROM filmLikes WHERE filmId = ? AND userId = ?)";
+    private static final String REMOVE_LIKE_QUERY = "DELETE FROM filmLikes WHERE filmId = ? AND userId = ?";
+    private static final String ADD_RATE_QUERY = "UPDATE films SET rate = rate + ? WHERE id = ?";
+    private static final String INCREMENT_RATE_QUERY = "UPDATE films SET rate = rate + 1 WHERE id = ?";
+    private static final String DECREMENT_RATE_QUERY = "UPDATE films SET rate = rate - 1 WHERE id = ?";
+    private static final int STREAM_FETCH_SIZE = 500;
+
     private final JdbcTemplate jdbcTemplate;
+    private final ApplicationEventPublisher eventPublisher;
 
     @Override
     public Set<Integer> getLikesByFilmId(Long filmId) {
@@ -29,20 +54,98 @@ public class LikesDbStorage implements LikesStorage {
     }
 
     @Override
+    @Transactional
     public void removeLike(Long idFilm, Long userId) {
-        String sqlQueryRemoveLike = "DELETE FROM filmLikes WHERE filmId = ? AND userId = ?";
-        jdbcTemplate.update(sqlQueryRemoveLike,
+        int removed = jdbcTemplate.update(REMOVE_LIKE_QUERY,
                 idFilm,
                 userId);
+        if (removed > 0) {
+            jdbcTemplate.update(DECREMENT_RATE_QUERY, idFilm);
+            eventPublisher.publishEvent(new LikeEvent(idFilm, userId, false));
+        }
     }
 
     @Override
+    @Transactional
     public void addLike(Long id, Long userId) {
-        String sqlQueryAdd = "MERGE INTO filmLikes(filmId,userId)" +
-                " values(?,?)";
-        jdbcTemplate.update(sqlQueryAdd,
-                id,
-                userId);
+        int added;
+        try {
+            added = jdbcTemplate.update(ADD_LIKE_QUERY,
+                    id,
+                    userId,
+                    id,
+                    userId);
+        } catch (DuplicateKeyException e) {
+            log.info("Лайк пользователя {} фильму {} уже поставлен", userId, id);
+            added = 0;
+        }
+        if (added > 0) {
+            jdbcTemplate.update(INCREMENT_RATE_QUERY, id);
+            eventPublisher.publishEvent(new LikeEvent(id, userId, true));
+        }
+    }
+
+    @Override
+    @Transactional
+    public List<Boolean> addLikes(List<Like> likes) {
+        int[] counts = jdbcTemplate.batchUpdate(ADD_LIKE_QUERY, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                Like like = likes.get(i);
+                ps.setLong(1, like.getFilmId());
+                ps.setLong(2, like.getUserId());
+                ps.setLong(3, like.getFilmId());
+                ps.setLong(4, like.getUserId());
+            }
+
+            @Override
+            public int getBatchSize() {
+                return likes.size();
+            }
+        });
+        return applyChanges(likes, counts, true);
+    }
+
+    @Override
+    @Transactional
+    public List<Boolean> removeLikes(List<Like> likes) {
+        int[] counts = jdbcTemplate.batchUpdate(REMOVE_LIKE_QUERY, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                ps.setLong(1, likes.get(i).getFilmId());
+                ps.setLong(2, likes.get(i).getUserId());
+            }
+
+            @Override
+            public int getBatchSize() {
+                return likes.size();
+            }
+        });
+        return applyChanges(likes, counts, false);
+    }
+
+    private List<Boolean> applyChanges(List<Like> likes, int[] counts, boolean liked) {
+        List<Boolean> changed = new ArrayList<>(likes.size());
+        Map<Long, Integer> rateChanges = new HashMap<>();
+        for (int i = 0; i < likes.size(); i++) {
+            boolean isChanged = counts[i] > 0;
+            changed.add(isChanged);
+            if (isChanged) {
+                rateChanges.merge(likes.get(i).getFilmId(), liked ? 1 : -1, Integer::sum);
+            }
+        }
+        if (!rateChanges.isEmpty()) {
+            jdbcTemplate.batchUpdate(ADD_RATE_QUERY, rateChanges.entrySet().stream()
+                    .map(change -> new Object[]{change.getValue(), change.getKey()})
+                    .collect(Collectors.toList()));
+        }
+        for (int i = 0; i < likes.size(); i++) {
+            if (changed.get(i)) {
+                Like like = likes.get(i);
+                eventPublisher.publishEvent(new LikeEvent(like.getFilmId(), like.getUserId(), liked));
+            }
+        }
+        return changed;
     }
 
     @Override
@@ -60,11 +163,32 @@ public class LikesDbStorage implements LikesStorage {
     }
 
     @Override
-    public Set<Long> getTopFilmLikes() {
-        String sqlQueryTopFilmLikes =
-                "SELECT t.id FROM films t LEFT JOIN " +
-                        "(SELECT filmId as id, count(userId) AS count FROM filmLikes GROUP BY filmId) AS cn ON t.id = cn.id " +
-                        "ORDER BY (COALESCE(t.RATE, 0) + COALESCE(cn.count, 0)) desc";
-        return new LinkedHashSet<>(jdbcTemplate.queryForList(sqlQueryTopFilmLikes, Long.class));
+    public Map<Long, Long> getLikeCounts() {
+        String sqlQueryLikeCounts = "SELECT f.id, COUNT(l.userId) AS likes FROM films f " +
+                "LEFT JOIN filmLikes l ON f.id = l.filmId GROUP BY f.id";
+        Map<Long, Long> counts = new HashMap<>();
+        jdbcTemplate.query(sqlQueryLikeCounts, rs -> {
+            counts.put(rs.getLong("id"), rs.getLong("likes"));
+        });
+        return counts;
+    }
+
+    @Override
+    public void streamLikes(Consumer<Like> action) {
+        String sqlQueryStreamLikes = "SELECT filmId, userId FROM filmLikes";
+        jdbcTemplate.query(connection -> {
+            PreparedStatement ps = connection.prepareStatement(sqlQueryStreamLikes,
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(STREAM_FETCH_SIZE);
+            return ps;
+        }, rs -> {
+            action.accept(new Like(rs.getLong("filmId"), rs.getLong("userId")));
+        });
+    }
+
+    @Override
+    public Set<Long> getTopFilmLikes(Integer count) {
+        String sqlQueryTopFilmLikes = "SELECT id FROM films ORDER BY rate DESC, id LIMIT ?";
+        return new LinkedHashSet<>(jdbcTemplate.queryForList(sqlQueryTopFilmLikes, Long.class, count));
     }
 }
\ No newline at end of file
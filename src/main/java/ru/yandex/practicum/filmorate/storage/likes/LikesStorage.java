@@ -1,15 +1,28 @@
 package ru.yandex.practicum.filmorate.storage.likes;
 
+import ru.yandex.practicum.filmorate.model.Like;
+
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.function.Consumer;
 
 public interface LikesStorage {
     Integer getAmountOfLikes(Long filmId, Long userId);
 
-    Set<Long> getTopFilmLikes();
+    Set<Long> getTopFilmLikes(Integer count);
 
     void removeLike(Long idFilm, Long delIdUser);
 
     void addLike(Long id, Long userId);
 
+    List<Boolean> addLikes(List<Like> likes);
+
+    List<Boolean> removeLikes(List<Like> likes);
+
     Set<Integer> getLikesByFilmId(Long filmId);
+
+    Map<Long, Long> getLikeCounts();
+
+    void streamLikes(Consumer<Like> action);
 }
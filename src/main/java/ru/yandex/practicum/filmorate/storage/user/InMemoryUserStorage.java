@@ -1,135 +1,374 @@
 package ru.yandex.practicum.filmorate.storage.user;
 
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.http.HttpStatus;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.stereotype.Component;
-import org.springframework.web.server.ResponseStatusException;
+import ru.yandex.practicum.filmorate.error.exception.NullException;
+import ru.yandex.practicum.filmorate.model.Friendship;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.event.FriendshipEvent;
+import ru.yandex.practicum.filmorate.storage.event.UserEvent;
 
-import javax.validation.Valid;
-import java.util.*;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
+/**
+ * Потокобезопасное хранилище пользователей в памяти. Дружба хранится отдельно от пользователей
+ * и, как и в БД, односторонняя. Изменения пользователя и его связей выполняются под блокировкой
+ * полосы (stripe), выбранной по id; для операций над парой пользователей полосы берутся по возрастанию.
+ */
 @Component
+@ConditionalOnProperty(name = "filmorate.storage", havingValue = "memory")
 @Slf4j
 public class InMemoryUserStorage implements UserStorage {
-    private final HashMap<Long, User> userHashMap = new HashMap<>();
-    private Long id = 0L;
+    private static final int LOCK_STRIPES = 64;
 
+    private final ConcurrentNavigableMap<Long, User> users = new ConcurrentSkipListMap<>();
+    private final ConcurrentMap<Long, Set<Long>> friendships = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Long> emails = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Long> logins = new ConcurrentHashMap<>();
+    private final AtomicLong idSequence = new AtomicLong();
+    private final ReentrantLock[] locks = new ReentrantLock[LOCK_STRIPES];
+    private final ApplicationEventPublisher eventPublisher;
+
+    public InMemoryUserStorage(ApplicationEventPublisher eventPublisher) {
+        this.eventPublisher = eventPublisher;
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    @Override
+    public User add(User user) {
+        if (user == null) {
+            throw new NullException("Пользователь не может быть null");
+        }
+        Long id = idSequence.incrementAndGet();
+        User createdUser = buildSavedUser(id, user);
+        ReentrantLock lock = stripe(id);
+        lock.lock();
+        try {
+            reserveUniqueKeys(id, createdUser);
+            users.put(id, createdUser);
+        } finally {
+            lock.unlock();
+        }
+        user.setId(id);
+        user.setName(createdUser.getName());
+        eventPublisher.publishEvent(new UserEvent(id, UserEvent.Type.ADDED));
+        log.info("Пользователь {} добавлен", createdUser);
+        return user;
+    }
+
+    /**
+     * Добавляет пользователей целиком или никого, как пакетная вставка в БД: уникальные ключи
+     * всех пользователей резервируются под блокировками их полос, при ошибке резерв снимается,
+     * события публикуются только после записи всего пакета.
+     */
     @Override
-    public User add(@Valid User user) {
-        if (user != null) {
-            user.setId(++id);
-            userHashMap.put(user.getId(), user);
-            log.info("Пользователь добавлен");
-            return user;
+    public List<User> addAll(List<User> users) {
+        List<User> createdUsers = new ArrayList<>(users.size());
+        for (User user : users) {
+            if (user == null) {
+                throw new NullException("Пользователь не может быть null");
+            }
+            createdUsers.add(buildSavedUser(idSequence.incrementAndGet(), user));
+        }
+        List<ReentrantLock> batchLocks = createdUsers.stream()
+                .map(user -> stripeIndex(user.getId()))
+                .distinct()
+                .sorted()
+                .map(index -> locks[index])
+                .collect(Collectors.toList());
+        batchLocks.forEach(ReentrantLock::lock);
+        try {
+            List<User> reserved = new ArrayList<>(createdUsers.size());
+            try {
+                for (User createdUser : createdUsers) {
+                    reserveUniqueKeys(createdUser.getId(), createdUser);
+                    reserved.add(createdUser);
+                }
+            } catch (RuntimeException e) {
+                reserved.forEach(user -> releaseUniqueKeys(user.getId(), user, null));
+                throw e;
+            }
+            createdUsers.forEach(user -> this.users.put(user.getId(), user));
+        } finally {
+            for (int i = batchLocks.size() - 1; i >= 0; i--) {
+                batchLocks.get(i).unlock();
+            }
+        }
+        for (int i = 0; i < users.size(); i++) {
+            users.get(i).setId(createdUsers.get(i).getId());
+            users.get(i).setName(createdUsers.get(i).getName());
+            eventPublisher.publishEvent(new UserEvent(createdUsers.get(i).getId(), UserEvent.Type.ADDED));
         }
-        log.info("Объект пользователь был null");
-        throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR);
+        log.info("Добавлено пользователей: {}", createdUsers.size());
+        return users;
     }
 
     @Override
-    public Optional<User> update(@Valid User user) {
-        if (user != null) {
-            if (userHashMap.containsKey(user.getId())) {
-                userHashMap.put(user.getId(), user);
-                log.info("Пользователь обновлен");
-                return Optional.of(user);
+    public Optional<User> update(User user) {
+        if (user == null) {
+            throw new NullException("Пользователь не может быть null");
+        }
+        Long id = user.getId();
+        if (id == null) {
+            return Optional.empty();
+        }
+        ReentrantLock lock = stripe(id);
+        lock.lock();
+        try {
+            User storedUser = users.get(id);
+            if (storedUser == null) {
+                log.info("Пользователя с идентификатором {} нет.", id);
+                return Optional.empty();
             }
-            log.info("Пользователь " + user.getId() + " не найден");
-            throw new ResponseStatusException(HttpStatus.NOT_FOUND);
+            User updatedUser = buildSavedUser(id, user);
+            reserveUniqueKeys(id, updatedUser);
+            users.put(id, updatedUser);
+            releaseUniqueKeys(id, storedUser, updatedUser);
+            user.setName(updatedUser.getName());
+        } finally {
+            lock.unlock();
         }
-        log.info("Объект пользователь был null");
-        throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR);
+        eventPublisher.publishEvent(new UserEvent(id, UserEvent.Type.UPDATED));
+        return Optional.of(user);
+    }
+
+    @Override
+    public List<User> getPage(Long after, int limit) {
+        return users.tailMap(after == null ? 0 : after, false).values().stream()
+                .limit(limit)
+                .map(this::copy)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public void streamAll(Consumer<? super User> action) {
+        users.values().forEach(user -> action.accept(copy(user)));
     }
 
     @Override
     public Optional<User> getById(Long id) {
-        if (userHashMap.containsKey(id)) {
-            return Optional.ofNullable(userHashMap.get(id));
+        User user = id == null ? null : users.get(id);
+        if (user == null) {
+            log.info("Пользователя с идентификатором {} нет.", id);
+            return Optional.empty();
         }
-        log.info("Пользователь " + id + " не найден");
-        throw new ResponseStatusException(HttpStatus.NOT_FOUND);
+        return Optional.of(copy(user));
     }
 
     @Override
-    public void delete(Long id) {
-        if (userHashMap.containsKey(id)) {
-            userHashMap.remove(id);
-        } else {
-            log.info("Пользователь " + id + " не найден");
-            throw new ResponseStatusException(HttpStatus.NOT_FOUND);
+    public List<User> getByIds(List<Long> ids) {
+        List<User> foundUsers = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            User user = id == null ? null : users.get(id);
+            if (user != null) {
+                foundUsers.add(copy(user));
+            }
         }
+        return foundUsers;
     }
 
     @Override
-    public Collection<User> getAll() {
-        return new ArrayList<>(userHashMap.values());
+    public boolean exists(Long id) {
+        return id != null && users.containsKey(id);
     }
 
+    @Override
+    public boolean existsAll(Collection<Long> ids) {
+        return ids.stream().allMatch(this::exists);
+    }
 
     @Override
-    public Map<Long, User> getUsersMap() {
-        return userHashMap;
+    public Set<Long> findExisting(Collection<Long> ids) {
+        return ids.stream()
+                .filter(this::exists)
+                .collect(Collectors.toSet());
+    }
+
+    @Override
+    public void delete(Long id) {
+        if (id == null) {
+            return;
+        }
+        ReentrantLock lock = stripe(id);
+        lock.lock();
+        try {
+            User removedUser = users.remove(id);
+            if (removedUser == null) {
+                return;
+            }
+            releaseUniqueKeys(id, removedUser, null);
+            friendships.remove(id);
+            friendships.values().forEach(friendIds -> friendIds.remove(id));
+        } finally {
+            lock.unlock();
+        }
+        eventPublisher.publishEvent(new FriendshipEvent(id, null, FriendshipEvent.Type.USER_DELETED));
+        eventPublisher.publishEvent(new UserEvent(id, UserEvent.Type.DELETED));
+    }
+
+    @Override
+    public Collection<User> getAll() {
+        return users.values().stream()
+                .map(this::copy)
+                .collect(Collectors.toList());
     }
 
     @Override
     public void addFriend(Long userId, Long idFriend) {
-        User user = userHashMap.get(userId);
-        user.addFriend(idFriend);
-        User friend = userHashMap.get(idFriend);
-        friend.addFriend(userId);
+        if (userId == null || idFriend == null) {
+            return;
+        }
+        boolean added = runLocked(userId, idFriend, () -> {
+            if (!users.containsKey(userId) || !users.containsKey(idFriend)) {
+                return false;
+            }
+            friendships.computeIfAbsent(userId, id -> new ConcurrentSkipListSet<>()).add(idFriend);
+            return true;
+        });
+        if (added) {
+            eventPublisher.publishEvent(new FriendshipEvent(userId, idFriend, FriendshipEvent.Type.ADDED));
+        }
+    }
+
+    @Override
+    public void addFriends(List<Friendship> friendships) {
+        for (Friendship friendship : friendships) {
+            addFriend(friendship.getUserId(), friendship.getFriendId());
+        }
     }
 
     @Override
     public void removeFriend(Long userId, Long idFriend) {
-        User user = userHashMap.get(userId);
-        user.removeFriend(idFriend);
-        User friend = userHashMap.get(idFriend);
-        friend.removeFriend(userId);
+        if (userId == null || idFriend == null || userId.equals(idFriend)) {
+            return;
+        }
+        boolean removed = runLocked(userId, idFriend, () -> {
+            Set<Long> friendIds = friendships.get(userId);
+            return friendIds != null && friendIds.remove(idFriend);
+        });
+        if (removed) {
+            eventPublisher.publishEvent(new FriendshipEvent(userId, idFriend, FriendshipEvent.Type.REMOVED));
+        }
     }
 
     @Override
     public List<User> getFriends(Long id) {
-        User user = userHashMap.get(id);
-        Set<Long> friendsIds = user.getFriends();
-
-        List<User> friends = new ArrayList<>();
-
-        for (Long friendsId : friendsIds) {
-            friends.add(userHashMap.get(friendsId));
+        Set<Long> friendIds = id == null ? null : friendships.get(id);
+        if (friendIds == null) {
+            return new ArrayList<>();
         }
-        return friends;
+        return getByIds(new ArrayList<>(friendIds));
     }
 
     @Override
     public List<User> getCommonFriends(Long firstUserId, Long secondUserId) {
-        User firstUser = userHashMap.get(firstUserId);
-        User secondUser = userHashMap.get(secondUserId);
-
-        Set<Long> firstUserFriends = firstUser.getFriends();
-        Set<Long> secondUserFriends = secondUser.getFriends();
-
-        if (isNullOrEmpty(firstUserFriends) || isNullOrEmpty(secondUserFriends)) {
+        Set<Long> firstUserFriends = firstUserId == null ? null : friendships.get(firstUserId);
+        Set<Long> secondUserFriends = secondUserId == null ? null : friendships.get(secondUserId);
+        if (firstUserFriends == null || secondUserFriends == null) {
             return Collections.emptyList();
         }
+        return getByIds(firstUserFriends.stream()
+                .filter(secondUserFriends::contains)
+                .collect(Collectors.toList()));
+    }
 
-        List<Long> commonFriendIds = new ArrayList<>(firstUserFriends);
-        commonFriendIds.retainAll(secondUserFriends);
-        if (commonFriendIds.isEmpty()) {
-            return Collections.emptyList();
+    @Override
+    public void streamFriendships(Consumer<Friendship> action) {
+        users.keySet().forEach(userId -> friendships.getOrDefault(userId, Set.of())
+                .forEach(friendId -> action.accept(new Friendship(userId, friendId))));
+    }
+
+    /**
+     * Выполняет действие под блокировками обоих пользователей. События публикуются вызывающим
+     * после снятия блокировок, чтобы слушатели не выполнялись под ними.
+     */
+    private boolean runLocked(Long firstId, Long secondId, BooleanSupplier action) {
+        int first = stripeIndex(firstId);
+        int second = stripeIndex(secondId);
+        ReentrantLock outer = locks[Math.min(first, second)];
+        ReentrantLock inner = locks[Math.max(first, second)];
+        outer.lock();
+        try {
+            inner.lock();
+            try {
+                return action.getAsBoolean();
+            } finally {
+                inner.unlock();
+            }
+        } finally {
+            outer.unlock();
         }
+    }
 
-        List<User> commonFiends = new ArrayList<>();
-        for (Long friendId : commonFriendIds) {
-            User friend = userHashMap.get(friendId);
-            if (Objects.nonNull(friend)) {
-                commonFiends.add(friend);
+    private void reserveUniqueKeys(Long id, User user) {
+        Long emailOwner = emails.putIfAbsent(user.getEmail(), id);
+        if (emailOwner != null && !emailOwner.equals(id)) {
+            throw new DuplicateKeyException("Электронная почта " + user.getEmail() + " уже используется");
+        }
+        Long loginOwner = logins.putIfAbsent(user.getLogin(), id);
+        if (loginOwner != null && !loginOwner.equals(id)) {
+            if (emailOwner == null) {
+                emails.remove(user.getEmail(), id);
             }
+            throw new DuplicateKeyException("Логин " + user.getLogin() + " уже используется");
         }
-        return commonFiends;
     }
 
-    private boolean isNullOrEmpty(Set<Long> friendIds) {
-        return Objects.isNull(friendIds) || friendIds.isEmpty();
+    private void releaseUniqueKeys(Long id, User oldUser, User newUser) {
+        if (newUser == null || !oldUser.getEmail().equals(newUser.getEmail())) {
+            emails.remove(oldUser.getEmail(), id);
+        }
+        if (newUser == null || !oldUser.getLogin().equals(newUser.getLogin())) {
+            logins.remove(oldUser.getLogin(), id);
+        }
+    }
+
+    private User buildSavedUser(Long id, User user) {
+        return User.builder()
+                .id(id)
+                .email(Objects.requireNonNull(user.getEmail()))
+                .login(Objects.requireNonNull(user.getLogin()))
+                .name(user.getName() == null || user.getName().isBlank() ? user.getLogin() : user.getName())
+                .birthday(user.getBirthday())
+                .build();
+    }
+
+    private User copy(User user) {
+        return User.builder()
+                .id(user.getId())
+                .email(user.getEmail())
+                .login(user.getLogin())
+                .name(user.getName())
+                .birthday(user.getBirthday())
+                .build();
+    }
+
+    private ReentrantLock stripe(Long id) {
+        return locks[stripeIndex(id)];
+    }
+
+    private int stripeIndex(Long id) {
+        return Math.floorMod(id.hashCode(), LOCK_STRIPES);
     }
 }
@@ -2,25 +2,46 @@ package ru.yandex.practicum.filmorate.storage.user;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.PreparedStatementCreator;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import ru.yandex.practicum.filmorate.error.exception.NullException;
+import ru.yandex.practicum.filmorate.model.Friendship;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.MultiRowInsert;
+import ru.yandex.practicum.filmorate.storage.event.FriendshipEvent;
+import ru.yandex.practicum.filmorate.storage.event.UserEvent;
 
 import java.sql.Date;
 import java.sql.*;
 import java.time.LocalDate;
 import java.util.*;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 @Slf4j
 @Component("userDbStorage")
+@ConditionalOnProperty(name = "filmorate.storage", havingValue = "db", matchIfMissing = true)
 @RequiredArgsConstructor
 public class UserDbStorage implements UserStorage {
 
+    private static final int STREAM_FETCH_SIZE = 500;
+
+    private static final String INSERT_USERS_PREFIX = "INSERT INTO users (email, login, name, birthday) VALUES ";
+    private static final String USER_VALUES = "(?,?,?,?)";
+    private static final int USER_COLUMNS = 4;
+    private static final String INSERT_USER_QUERY = INSERT_USERS_PREFIX + USER_VALUES;
+    private static final String ADD_FRIEND_QUERY = "MERGE INTO userFriends(userId, friendsId) VALUES (?,?)";
+
     private final JdbcTemplate jdbcTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate transactionTemplate;
 
     private User rowMapToUser(ResultSet resultSet, int i) throws SQLException {
         LocalDate birthday;
@@ -46,21 +67,42 @@ public class UserDbStorage implements UserStorage {
         if (user.getName() == null || user.getName().isBlank()) {
             user.setName(user.getLogin());
         }
-        String sqlQueryToUsers = "INSERT INTO users (email, login, name, birthday) VALUES (?,?,?,?)";
         PreparedStatementCreator psc = con -> {
-            PreparedStatement ps = con.prepareStatement(sqlQueryToUsers, Statement.RETURN_GENERATED_KEYS);
-            ps.setString(1, user.getEmail());
-            ps.setString(2, user.getLogin());
-            ps.setString(3, user.getName());
-            ps.setDate(4, Date.valueOf((user.getBirthday())));
+            PreparedStatement ps = con.prepareStatement(INSERT_USER_QUERY, Statement.RETURN_GENERATED_KEYS);
+            setUserParameters(ps, 0, user);
             return ps;
         };
         GeneratedKeyHolder gkh = new GeneratedKeyHolder();
         jdbcTemplate.update(psc, gkh);
         user.setId(Objects.requireNonNull(gkh.getKey()).longValue());
+        eventPublisher.publishEvent(new UserEvent(user.getId(), UserEvent.Type.ADDED));
         return user;
     }
 
+    /**
+     * Как и в FilmDbStorage.addAll: вставка в отдельной транзакции, события ADDED после её фиксации.
+     */
+    @Override
+    public List<User> addAll(List<User> users) {
+        if (users.isEmpty()) {
+            return new ArrayList<>();
+        }
+        users.forEach(user -> {
+            if (user.getName() == null || user.getName().isBlank()) {
+                user.setName(user.getLogin());
+            }
+        });
+        List<Long> userIds = Objects.requireNonNull(transactionTemplate.execute(status ->
+                MultiRowInsert.insertReturningKeys(jdbcTemplate, INSERT_USERS_PREFIX, USER_VALUES, USER_COLUMNS,
+                        users, this::setUserParameters)));
+        for (int i = 0; i < users.size(); i++) {
+            users.get(i).setId(userIds.get(i));
+            eventPublisher.publishEvent(new UserEvent(userIds.get(i), UserEvent.Type.ADDED));
+        }
+        log.info("В базу данных добавлено пользователей: {}", users.size());
+        return users;
+    }
+
     @Override
     public Optional<User> update(User user) {
         if (user == null) {
@@ -75,20 +117,32 @@ public class UserDbStorage implements UserStorage {
         String sqlQueryUpdate = "UPDATE users " +
                 "SET email = ?, login = ?, name = ?, birthday = ?" +
                 "WHERE id = ?";
-        jdbcTemplate.update(sqlQueryUpdate,
+        int updatedRowsCount = jdbcTemplate.update(sqlQueryUpdate,
                 user.getEmail(),
                 user.getLogin(),
                 name,
                 user.getBirthday(),
                 user.getId());
+        if (updatedRowsCount == 0) {
+            log.info("Пользователя с идентификатором {} нет.", user.getId());
+            return Optional.empty();
+        }
+        user.setName(name);
+        eventPublisher.publishEvent(new UserEvent(user.getId(), UserEvent.Type.UPDATED));
         return Optional.of(user);
     }
 
     @Override
+    @Transactional
     public void delete(Long id) {
         String sqlQueryDelete = "DELETE FROM users WHERE id = ?";
+        String sqlQueryDeleteFriendships = "DELETE FROM userFriends WHERE userId = ? OR friendsId = ?";
         try {
-            jdbcTemplate.update(sqlQueryDelete, id);
+            if (jdbcTemplate.update(sqlQueryDelete, id) > 0) {
+                jdbcTemplate.update(sqlQueryDeleteFriendships, id, id);
+                eventPublisher.publishEvent(new FriendshipEvent(id, null, FriendshipEvent.Type.USER_DELETED));
+                eventPublisher.publishEvent(new UserEvent(id, UserEvent.Type.DELETED));
+            }
         } catch (EmptyResultDataAccessException e) {
             log.info("В базе нет информации по запросу {}", sqlQueryDelete);
         }
@@ -106,6 +160,25 @@ public class UserDbStorage implements UserStorage {
         return users;
     }
 
+    @Override
+    public List<User> getPage(Long after, int limit) {
+        String sqlQueryGetPage = "SELECT * FROM users WHERE id > ? ORDER BY id LIMIT ?";
+        return jdbcTemplate.query(sqlQueryGetPage, this::rowMapToUser, after == null ? 0 : after, limit);
+    }
+
+    @Override
+    public void streamAll(Consumer<? super User> action) {
+        String sqlQueryStreamAll = "SELECT * FROM users ORDER BY id";
+        jdbcTemplate.query(connection -> {
+            PreparedStatement ps = connection.prepareStatement(sqlQueryStreamAll,
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(STREAM_FETCH_SIZE);
+            return ps;
+        }, rs -> {
+            action.accept(rowMapToUser(rs, rs.getRow()));
+        });
+    }
+
     @Override
     public Optional<User> getById(Long id) {
         String sqlQueryGetById = "SELECT * FROM users WHERE id = ?";
@@ -120,36 +193,104 @@ public class UserDbStorage implements UserStorage {
     }
 
     @Override
-    public Map<Long, User> getUsersMap() {
-        String sqlQueryUsersMap = "SELECT * FROM users";
-        List<User> userMap = jdbcTemplate.query(sqlQueryUsersMap, this::rowMapToUser);
-        Map<Long, User> result = new HashMap<>();
-        for (User user : userMap) {
-            result.put(user.getId(), user);
+    public List<User> getByIds(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
         }
-        return result;
+        String sqlQueryGetByIds = String.format("SELECT * FROM users WHERE id IN (%s)",
+                String.join(",", Collections.nCopies(ids.size(), "?")));
+        Map<Long, User> usersById = new HashMap<>();
+        jdbcTemplate.query(sqlQueryGetByIds, this::rowMapToUser, ids.toArray())
+                .forEach(user -> usersById.put(user.getId(), user));
+        List<User> users = new ArrayList<>();
+        for (Long id : ids) {
+            User user = usersById.get(id);
+            if (user != null) {
+                users.add(user);
+            }
+        }
+        return users;
     }
 
     @Override
+    public boolean exists(Long id) {
+        if (id == null) {
+            return false;
+        }
+        String sqlQueryExists = "SELECT EXISTS(SELECT 1 FROM users WHERE id = ?)";
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(sqlQueryExists, Boolean.class, id));
+    }
+
+    @Override
+    public boolean existsAll(Collection<Long> ids) {
+        Set<Long> distinctIds = new HashSet<>(ids);
+        if (distinctIds.contains(null)) {
+            return false;
+        }
+        if (distinctIds.isEmpty()) {
+            return true;
+        }
+        String sqlQueryCount = String.format("SELECT COUNT(*) FROM users WHERE id IN (%s)",
+                String.join(",", Collections.nCopies(distinctIds.size(), "?")));
+        Integer count = jdbcTemplate.queryForObject(sqlQueryCount, Integer.class, distinctIds.toArray());
+        return count != null && count == distinctIds.size();
+    }
+
+    @Override
+    public Set<Long> findExisting(Collection<Long> ids) {
+        Set<Long> distinctIds = ids.stream()
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+        if (distinctIds.isEmpty()) {
+            return new HashSet<>();
+        }
+        String sqlQueryIds = String.format("SELECT id FROM users WHERE id IN (%s)",
+                String.join(",", Collections.nCopies(distinctIds.size(), "?")));
+        return new HashSet<>(jdbcTemplate.queryForList(sqlQueryIds, Long.class, distinctIds.toArray()));
+    }
+
+    @Override
+    @Transactional
     public void addFriend(Long userId, Long idFriend) {
-        String sqlQueryAddFriend = "MERGE INTO userFriends(userId, friendsId) VALUES (?,?)";
-        jdbcTemplate.update(sqlQueryAddFriend, userId, idFriend);
+        jdbcTemplate.update(ADD_FRIEND_QUERY, userId, idFriend);
+        eventPublisher.publishEvent(new FriendshipEvent(userId, idFriend, FriendshipEvent.Type.ADDED));
     }
 
     @Override
+    @Transactional
+    public void addFriends(List<Friendship> friendships) {
+        jdbcTemplate.batchUpdate(ADD_FRIEND_QUERY, friendships, friendships.size(), (ps, friendship) -> {
+            ps.setLong(1, friendship.getUserId());
+            ps.setLong(2, friendship.getFriendId());
+        });
+        friendships.forEach(friendship -> eventPublisher.publishEvent(
+                new FriendshipEvent(friendship.getUserId(), friendship.getFriendId(), FriendshipEvent.Type.ADDED)));
+    }
+
+    @Override
+    @Transactional
     public void removeFriend(Long id, Long idRemoveFriend) {
         if (id == null || idRemoveFriend == null || id.equals(idRemoveFriend)) {
             return;
         }
         String sqlQueryRemoveFriend = "DELETE FROM userFriends f WHERE f.userId = ? AND f.friendsId = ?";
         try {
-            jdbcTemplate.update(sqlQueryRemoveFriend, id, idRemoveFriend);
+            if (jdbcTemplate.update(sqlQueryRemoveFriend, id, idRemoveFriend) > 0) {
+                eventPublisher.publishEvent(new FriendshipEvent(id, idRemoveFriend, FriendshipEvent.Type.REMOVED));
+            }
         } catch (EmptyResultDataAccessException e) {
             log.info("В базе нет информации по запросу {}.  userId={}, friendsId={}",
                     sqlQueryRemoveFriend, id, idRemoveFriend);
         }
     }
 
+    private void setUserParameters(PreparedStatement ps, int offset, User user) throws SQLException {
+        ps.setString(offset + 1, user.getEmail());
+        ps.setString(offset + 2, user.getLogin());
+        ps.setString(offset + 3, user.getName());
+        ps.setDate(offset + 4, Date.valueOf((user.getBirthday())));
+    }
+
     @Override
     public List<User> getFriends(Long id) {
         List<User> friends = new ArrayList<>();
@@ -179,4 +320,17 @@ public class UserDbStorage implements UserStorage {
         }
         return commonFriends;
     }
-}
\ No newline at end of file
+
+    @Override
+    public void streamFriendships(Consumer<Friendship> action) {
+        String sqlQueryStreamFriendships = "SELECT userId, friendsId FROM userFriends ORDER BY userId, friendsId";
+        jdbcTemplate.query(connection -> {
+            PreparedStatement ps = connection.prepareStatement(sqlQueryStreamFriendships,
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(STREAM_FETCH_SIZE);
+            return ps;
+        }, rs -> {
+            action.accept(new Friendship(rs.getLong("userId"), rs.getLong("friendsId")));
+        });
+    }
+}
@@ -1,20 +1,23 @@
 package ru.yandex.practicum.filmorate.storage.user;
 
+import ru.yandex.practicum.filmorate.model.Friendship;
 import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.storage.Storage;
 
 import java.util.List;
-import java.util.Map;
+import java.util.function.Consumer;
 
 public interface UserStorage extends Storage<User> {
 
     void addFriend(Long userId, Long idFriend);
 
+    void addFriends(List<Friendship> friendships);
+
     void removeFriend(Long id, Long idRemoveFriend);
 
     List<User> getFriends(Long id);
 
     List<User> getCommonFriends(Long id, Long otherId);
 
-    Map<Long, User> getUsersMap();
+    void streamFriendships(Consumer<Friendship> action);
 }
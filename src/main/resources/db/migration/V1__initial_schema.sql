@@ -1,18 +1,10 @@
-DROP TABLE IF EXISTS users;
-DROP TABLE IF EXISTS films;
-DROP TABLE IF EXISTS genreNames;
-DROP TABLE IF EXISTS genre;
-DROP TABLE IF EXISTS MPARatings;
-DROP TABLE IF EXISTS filmLikes;
-DROP TABLE IF EXISTS userFriends;
-
 CREATE TABLE IF NOT EXISTS films(
         id LONG PRIMARY KEY AUTO_INCREMENT,
         name VARCHAR NOT NULL,
         description VARCHAR(200),
         releaseDate DATE,
         duration INTEGER,
-        rate LONG,
+        rate INTEGER DEFAULT 0 NOT NULL,
         ratingMPAId INTEGER
 );
 
@@ -54,4 +46,5 @@ CREATE TABLE IF NOT EXISTS userFriends(
 );
 
 create unique index if not exists USER_EMAIL_UINDEX on USERS (email);
-create unique index if not exists USER_LOGIN_UINDEX on USERS (login);
\ No newline at end of file
+create unique index if not exists USER_LOGIN_UINDEX on USERS (login);
+create index if not exists FILMS_RATE_IDX on FILMS (rate desc, id);
\ No newline at end of file
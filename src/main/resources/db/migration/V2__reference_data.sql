@@ -13,4 +13,4 @@ values
 (3 , 'Мультфильм'),
 (4 , 'Триллер'),
 (5 , 'Документальный'),
-(6 , 'Боевик');
\ No newline at end of file
+(6 , 'Боевик');
@@ -0,0 +1,3 @@
+create index if not exists GENRE_GENRE_ID_IDX on GENRE (genreId);
+create index if not exists FILM_LIKES_USER_ID_IDX on FILMLIKES (userId);
+create index if not exists USER_FRIENDS_FRIENDS_ID_IDX on USERFRIENDS (friendsId);
@@ -0,0 +1,3 @@
+UPDATE films SET rate = 0 WHERE rate IS NULL;
+ALTER TABLE films ALTER COLUMN rate INTEGER DEFAULT 0 NOT NULL;
+create index if not exists FILMS_RATE_IDX on FILMS (rate desc, id);
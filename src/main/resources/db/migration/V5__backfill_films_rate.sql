@@ -0,0 +1 @@
+UPDATE films f SET rate = (SELECT COUNT(*) FROM filmLikes l WHERE l.filmId = f.id);
@@ -0,0 +1,63 @@
+package ru.yandex.practicum.filmorate.indexTest;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import ru.yandex.practicum.filmorate.index.EntityVersions;
+import ru.yandex.practicum.filmorate.storage.catalog.ReferenceDataCatalog;
+import ru.yandex.practicum.filmorate.storage.event.FilmEvent;
+import ru.yandex.practicum.filmorate.storage.event.FriendshipEvent;
+import ru.yandex.practicum.filmorate.storage.event.LikeEvent;
+import ru.yandex.practicum.filmorate.storage.event.UserEvent;
+
+public class EntityVersionsTest {
+    private final ReferenceDataCatalog referenceDataCatalog = Mockito.mock(ReferenceDataCatalog.class);
+    private final EntityVersions versions = new EntityVersions(referenceDataCatalog);
+
+    @Test
+    public void shouldChangeFilmTagOnlyOnWritesToThatFilm() {
+        String created = versions.getFilmTag(1L);
+        versions.onFilm(new FilmEvent(1L, FilmEvent.Type.ADDED, null));
+        String added = versions.getFilmTag(1L);
+        String otherFilm = versions.getFilmTag(2L);
+
+        versions.onFilm(new FilmEvent(2L, FilmEvent.Type.UPDATED, null));
+        Assertions.assertEquals(added, versions.getFilmTag(1L));
+        Assertions.assertNotEquals(otherFilm, versions.getFilmTag(2L));
+
+        versions.onLike(new LikeEvent(1L, 5L, true));
+        String liked = versions.getFilmTag(1L);
+        versions.onFilm(new FilmEvent(1L, FilmEvent.Type.DELETED, null));
+
+        Assertions.assertNotEquals(created, added);
+        Assertions.assertNotEquals(added, liked);
+        Assertions.assertNotEquals(liked, versions.getFilmTag(1L));
+        Assertions.assertNotEquals(created, versions.getFilmTag(1L));
+    }
+
+    @Test
+    public void shouldChangeFriendsTagOnFriendshipOrAnyUserChange() {
+        String friends = versions.getFriendsTag(1L);
+        versions.onFriendship(new FriendshipEvent(2L, 1L, FriendshipEvent.Type.ADDED));
+        Assertions.assertEquals(friends, versions.getFriendsTag(1L));
+
+        versions.onFriendship(new FriendshipEvent(1L, 2L, FriendshipEvent.Type.ADDED));
+        String withFriend = versions.getFriendsTag(1L);
+        Assertions.assertNotEquals(friends, withFriend);
+
+        String user = versions.getUserTag(1L);
+        versions.onUser(new UserEvent(2L, UserEvent.Type.UPDATED));
+        Assertions.assertEquals(user, versions.getUserTag(1L));
+        Assertions.assertNotEquals(withFriend, versions.getFriendsTag(1L));
+    }
+
+    @Test
+    public void shouldFollowReferenceCatalogVersion() {
+        Mockito.when(referenceDataCatalog.getVersion()).thenReturn(1L);
+        String loaded = versions.getReferenceTag();
+        Assertions.assertEquals(loaded, versions.getReferenceTag());
+
+        Mockito.when(referenceDataCatalog.getVersion()).thenReturn(2L);
+        Assertions.assertNotEquals(loaded, versions.getReferenceTag());
+    }
+}
@@ -0,0 +1,109 @@
+package ru.yandex.practicum.filmorate.indexTest;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import ru.yandex.practicum.filmorate.index.FilmFacetIndex;
+import ru.yandex.practicum.filmorate.model.FacetedPage;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmFilter;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.MPA;
+import ru.yandex.practicum.filmorate.storage.event.FilmEvent;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import static org.mockito.ArgumentMatchers.any;
+
+public class FilmFacetIndexTest {
+    private FilmFacetIndex index;
+
+    @BeforeEach
+    public void createIndex() {
+        FilmStorage filmStorage = Mockito.mock(FilmStorage.class);
+        Mockito.doAnswer(invocation -> {
+            Consumer<Film> action = invocation.getArgument(0);
+            List.of(film(1L, 1, 1990, 1, 2),
+                    film(2L, 3, 1995, 2),
+                    film(3L, 3, 2005, 1),
+                    film(4L, 1, 1999),
+                    film(5L, 3, 1990, 2, 6)).forEach(action);
+            return null;
+        }).when(filmStorage).streamAll(any());
+        index = new FilmFacetIndex(filmStorage);
+        index.rebuild();
+    }
+
+    @Test
+    public void shouldCombineFacetsAndCountOtherFacetsOnResult() {
+        FacetedPage<Long> page = index.filter(FilmFilter.builder()
+                .genres(List.of(2))
+                .mpa(List.of(3))
+                .yearFrom(1990)
+                .yearTo(2000)
+                .build(), null, 10);
+
+        Assertions.assertEquals(List.of(2L, 5L), page.getItems());
+        Assertions.assertEquals(2, page.getTotal());
+        Assertions.assertNull(page.getNextCursor());
+        Assertions.assertEquals(Map.of(2, 2, 6, 1), page.getFacets().get(FacetedPage.GENRE_FACET));
+        Assertions.assertEquals(Map.of(1, 1, 3, 2), page.getFacets().get(FacetedPage.MPA_FACET));
+        Assertions.assertEquals(Map.of(1990, 1, 1995, 1), page.getFacets().get(FacetedPage.YEAR_FACET));
+
+        page = index.filter(FilmFilter.builder().genres(List.of(1, 6)).build(), null, 10);
+        Assertions.assertEquals(List.of(1L, 3L, 5L), page.getItems());
+
+        page = index.filter(FilmFilter.builder().genres(List.of(99)).yearTo(1980).build(), null, 10);
+        Assertions.assertEquals(List.of(), page.getItems());
+        Assertions.assertEquals(0, page.getTotal());
+    }
+
+    @Test
+    public void shouldPageByCursor() {
+        FilmFilter filter = FilmFilter.builder().yearFrom(1990).build();
+
+        FacetedPage<Long> first = index.filter(filter, null, 2);
+        FacetedPage<Long> second = index.filter(filter, first.getNextCursor(), 2);
+        FacetedPage<Long> last = index.filter(filter, second.getNextCursor(), 2);
+
+        Assertions.assertEquals(List.of(1L, 2L), first.getItems());
+        Assertions.assertEquals(List.of(3L, 4L), second.getItems());
+        Assertions.assertEquals(List.of(5L), last.getItems());
+        Assertions.assertNull(last.getNextCursor());
+        Assertions.assertEquals(5, last.getTotal());
+    }
+
+    @Test
+    public void shouldFollowFilmChanges() {
+        index.onFilm(new FilmEvent(6L, FilmEvent.Type.ADDED, film(6L, 3, 1991, 2)));
+        index.onFilm(new FilmEvent(2L, FilmEvent.Type.UPDATED, film(2L, 1, 2010, 4)));
+        index.onFilm(new FilmEvent(5L, FilmEvent.Type.DELETED, null));
+
+        FacetedPage<Long> page = index.filter(FilmFilter.builder().genres(List.of(2)).build(), null, 10);
+
+        Assertions.assertEquals(List.of(1L, 6L), page.getItems());
+        Assertions.assertEquals(Map.of(1, 1, 3, 1), page.getFacets().get(FacetedPage.MPA_FACET));
+        Assertions.assertEquals(List.of(2L),
+                index.filter(FilmFilter.builder().genres(List.of(4)).mpa(List.of(1)).build(), null, 10).getItems());
+    }
+
+    private Film film(Long id, int mpaId, int year, Integer... genreIds) {
+        return Film.builder()
+                .id(id)
+                .name("film" + id)
+                .releaseDate(LocalDate.of(year, 1, 1))
+                .mpa(new MPA(mpaId, null))
+                .genres(Arrays.stream(genreIds)
+                        .map(genreId -> new Genre(genreId, null))
+                        .collect(Collectors.toCollection(LinkedHashSet::new)))
+                .build();
+    }
+}
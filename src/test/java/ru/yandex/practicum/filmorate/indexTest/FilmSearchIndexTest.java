@@ -0,0 +1,80 @@
+package ru.yandex.practicum.filmorate.indexTest;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import ru.yandex.practicum.filmorate.index.FilmSearchIndex;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.storage.event.FilmEvent;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.mockito.ArgumentMatchers.any;
+
+public class FilmSearchIndexTest {
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private FilmSearchIndex index;
+
+    @BeforeEach
+    public void createIndex() {
+        FilmStorage filmStorage = Mockito.mock(FilmStorage.class);
+        Mockito.doAnswer(invocation -> {
+            Consumer<Film> action = invocation.getArgument(0);
+            List.of(film(1L, "Ёлки", "Новогодний мультфильм про зимний праздник"),
+                    film(2L, "Мультфильм про ёжика", "Ёжик в тумане"),
+                    film(3L, "Terminator", "Cyborg sent back in time"),
+                    film(4L, "Зимний вечер", "Драма")).forEach(action);
+            return null;
+        }).when(filmStorage).streamAll(any());
+        index = new FilmSearchIndex(filmStorage, meterRegistry);
+        index.rebuild();
+    }
+
+    @Test
+    public void shouldMatchCyrillicIgnoringCaseAndYo() {
+        Assertions.assertEquals(List.of(1L), index.search("ЕЛКИ", 10));
+        Assertions.assertEquals(List.of(2L), index.search("ежик", 10));
+        Assertions.assertEquals(List.of(2L, 1L), index.search("Мультфильм", 10));
+        Assertions.assertEquals(List.of(3L), index.search("terminator!", 10));
+        Assertions.assertEquals(List.of(), index.search("  ,. ", 10));
+    }
+
+    @Test
+    public void shouldMatchPrefixOfLastWordAndRequireAllWords() {
+        Assertions.assertEquals(List.of(4L, 1L), index.search("зим", 10));
+        Assertions.assertEquals(List.of(1L), index.search("зимний праз", 10));
+        Assertions.assertEquals(List.of(), index.search("зим праздник", 10));
+        Assertions.assertEquals(List.of(2L), index.search("мультфильм ежи", 10));
+        Assertions.assertEquals(List.of(2L), index.search("мульт", 1));
+    }
+
+    @Test
+    public void shouldFollowFilmChangesAndReportMemory() {
+        double initialSize = meterRegistry.get("filmorate.search.index.size").gauge().value();
+        Assertions.assertTrue(initialSize > 0);
+
+        index.onFilm(new FilmEvent(5L, FilmEvent.Type.ADDED, film(5L, "Терминатор", "Боевик")));
+        index.onFilm(new FilmEvent(3L, FilmEvent.Type.UPDATED, film(3L, "Terminator 2", "Judgment day")));
+        index.onFilm(new FilmEvent(1L, FilmEvent.Type.DELETED, null));
+
+        Assertions.assertEquals(List.of(5L), index.search("термин", 10));
+        Assertions.assertEquals(List.of(3L), index.search("judgment", 10));
+        Assertions.assertEquals(List.of(), index.search("cyborg", 10));
+        Assertions.assertEquals(List.of(), index.search("елки", 10));
+        Assertions.assertEquals(List.of(4L), index.search("зимний", 10));
+        Assertions.assertEquals(index.getTermCount(),
+                meterRegistry.get("filmorate.search.index.terms").gauge().value());
+    }
+
+    private Film film(Long id, String name, String description) {
+        return Film.builder()
+                .id(id)
+                .name(name)
+                .description(description)
+                .build();
+    }
+}
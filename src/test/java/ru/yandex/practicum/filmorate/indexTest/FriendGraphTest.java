@@ -0,0 +1,101 @@
+package ru.yandex.practicum.filmorate.indexTest;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+import ru.yandex.practicum.filmorate.index.FriendGraph;
+import ru.yandex.practicum.filmorate.model.Friendship;
+import ru.yandex.practicum.filmorate.storage.event.FriendshipEvent;
+import ru.yandex.practicum.filmorate.storage.user.UserStorage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Consumer;
+
+import static org.mockito.ArgumentMatchers.any;
+
+public class FriendGraphTest {
+    private FriendGraph graph;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    public void createGraph() {
+        UserStorage userStorage = Mockito.mock(UserStorage.class);
+        Mockito.doAnswer(invocation -> {
+            Consumer<Friendship> action = invocation.getArgument(0);
+            List.of(new Friendship(1L, 5L), new Friendship(1L, 3L), new Friendship(1L, 4L),
+                    new Friendship(2L, 3L), new Friendship(2L, 4L), new Friendship(2L, 6L),
+                    new Friendship(3L, 4L), new Friendship(3L, 1L)).forEach(action);
+            return null;
+        }).when(userStorage).streamFriendships(any(Consumer.class));
+        graph = new FriendGraph(userStorage);
+        graph.rebuild();
+    }
+
+    @Test
+    public void shouldIntersectSortedAdjacencyLists() {
+        Assertions.assertArrayEquals(new long[]{3, 4, 5}, graph.getFriends(1L));
+        Assertions.assertArrayEquals(new long[]{3, 4}, graph.getCommonFriends(1L, 2L));
+        Assertions.assertArrayEquals(new long[]{4}, graph.getCommonFriends(1L, 2L, 3L));
+        Assertions.assertArrayEquals(new long[0], graph.getCommonFriends(1L, 99L));
+        Assertions.assertEquals(8, graph.getEdgeCount());
+    }
+
+    @Test
+    public void shouldFollowFriendshipEvents() {
+        graph.onFriendship(new FriendshipEvent(3L, 6L, FriendshipEvent.Type.ADDED));
+        graph.onFriendship(new FriendshipEvent(3L, 6L, FriendshipEvent.Type.ADDED));
+        graph.onFriendship(new FriendshipEvent(1L, 3L, FriendshipEvent.Type.REMOVED));
+
+        Assertions.assertArrayEquals(new long[]{1, 4, 6}, graph.getFriends(3L));
+        Assertions.assertArrayEquals(new long[]{4}, graph.getCommonFriends(1L, 2L));
+
+        graph.onFriendship(new FriendshipEvent(4L, null, FriendshipEvent.Type.USER_DELETED));
+
+        Assertions.assertArrayEquals(new long[]{5}, graph.getFriends(1L));
+        Assertions.assertArrayEquals(new long[]{6}, graph.getCommonFriends(2L, 3L));
+    }
+
+    @Test
+    public void shouldRankSuggestionsByMutualFriends() {
+        graph.onFriendship(new FriendshipEvent(5L, 6L, FriendshipEvent.Type.ADDED));
+        graph.onFriendship(new FriendshipEvent(4L, 6L, FriendshipEvent.Type.ADDED));
+        graph.onFriendship(new FriendshipEvent(4L, 2L, FriendshipEvent.Type.ADDED));
+
+        Assertions.assertEquals(List.of(new FriendGraph.Suggestion(6L, 2), new FriendGraph.Suggestion(2L, 1)),
+                graph.getSuggestions(1L, 10));
+        Assertions.assertEquals(List.of(new FriendGraph.Suggestion(6L, 2)), graph.getSuggestions(1L, 1));
+        Assertions.assertEquals(List.of(), graph.getSuggestions(6L, 10));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void shouldGiveSameSuggestionsInParallelPass() {
+        Random random = new Random(42);
+        List<Friendship> friendships = new ArrayList<>();
+        for (long friendId = 2; friendId <= 3000; friendId++) {
+            friendships.add(new Friendship(1L, friendId));
+            for (int i = 0; i < 20; i++) {
+                friendships.add(new Friendship(friendId, 2L + random.nextInt(10_000)));
+            }
+        }
+        UserStorage userStorage = Mockito.mock(UserStorage.class);
+        Mockito.doAnswer(invocation -> {
+            friendships.forEach(invocation.<Consumer<Friendship>>getArgument(0));
+            return null;
+        }).when(userStorage).streamFriendships(any(Consumer.class));
+        FriendGraph largeGraph = new FriendGraph(userStorage);
+        largeGraph.rebuild();
+
+        List<FriendGraph.Suggestion> sequential = largeGraph.getSuggestions(1L, 50);
+        ReflectionTestUtils.setField(largeGraph, "parallelThreshold", 256);
+        List<FriendGraph.Suggestion> parallel = largeGraph.getSuggestions(1L, 50);
+
+        Assertions.assertEquals(50, sequential.size());
+        Assertions.assertEquals(sequential, parallel);
+        Assertions.assertTrue(sequential.stream().allMatch(suggestion -> suggestion.getUserId() > 3000));
+    }
+}
@@ -0,0 +1,66 @@
+package ru.yandex.practicum.filmorate.indexTest;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import ru.yandex.practicum.filmorate.index.LikeBitmapIndex;
+import ru.yandex.practicum.filmorate.model.Like;
+import ru.yandex.practicum.filmorate.storage.event.FilmEvent;
+import ru.yandex.practicum.filmorate.storage.event.LikeEvent;
+import ru.yandex.practicum.filmorate.storage.likes.LikesStorage;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.mockito.ArgumentMatchers.any;
+
+public class LikeBitmapIndexTest {
+    private LikeBitmapIndex index;
+
+    @BeforeEach
+    public void createIndex() {
+        LikesStorage likesStorage = Mockito.mock(LikesStorage.class);
+        Mockito.doAnswer(invocation -> {
+            Consumer<Like> action = invocation.getArgument(0);
+            List.of(new Like(1L, 1L), new Like(2L, 1L),
+                    new Like(1L, 2L), new Like(2L, 2L), new Like(3L, 2L),
+                    new Like(1L, 3L), new Like(4L, 3L),
+                    new Like(5L, 4L)).forEach(action);
+            return null;
+        }).when(likesStorage).streamLikes(any());
+        index = new LikeBitmapIndex(likesStorage);
+        index.rebuild();
+    }
+
+    @Test
+    public void shouldRankFilmsByOverlapOfNeighbours() {
+        Assertions.assertEquals(List.of(3L, 4L), index.getRecommendations(1L, 10));
+        Assertions.assertEquals(List.of(3L), index.getRecommendations(1L, 1));
+        Assertions.assertEquals(List.of(2L, 3L), index.getRecommendations(3L, 10));
+        Assertions.assertEquals(List.of(), index.getRecommendations(4L, 10));
+        Assertions.assertEquals(List.of(), index.getRecommendations(99L, 10));
+    }
+
+    @Test
+    public void shouldRecalculateAfterUserLikesChange() {
+        Assertions.assertEquals(List.of(3L, 4L), index.getRecommendations(1L, 10));
+
+        index.onLike(new LikeEvent(3L, 1L, true));
+        Assertions.assertEquals(List.of(4L), index.getRecommendations(1L, 10));
+
+        index.onLike(new LikeEvent(3L, 1L, false));
+        index.onLike(new LikeEvent(2L, 1L, false));
+        Assertions.assertEquals(List.of(2L, 3L, 4L), index.getRecommendations(1L, 10));
+    }
+
+    @Test
+    public void shouldDropDeletedFilmFromRecommendations() {
+        Assertions.assertEquals(List.of(3L, 4L), index.getRecommendations(1L, 10));
+
+        index.onFilm(new FilmEvent(4L, FilmEvent.Type.DELETED, null));
+
+        Assertions.assertEquals(List.of(3L), index.getRecommendations(1L, 10));
+        Assertions.assertEquals(List.of(2L, 3L), index.getRecommendations(3L, 10));
+    }
+}
@@ -0,0 +1,75 @@
+package ru.yandex.practicum.filmorate.indexTest;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import ru.yandex.practicum.filmorate.index.PopularityIndex;
+import ru.yandex.practicum.filmorate.storage.event.FilmEvent;
+import ru.yandex.practicum.filmorate.storage.event.LikeEvent;
+import ru.yandex.practicum.filmorate.storage.likes.LikesStorage;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+public class PopularityIndexTest {
+    private PopularityIndex index;
+
+    @BeforeEach
+    public void createIndex() {
+        LikesStorage likesStorage = Mockito.mock(LikesStorage.class);
+        Mockito.when(likesStorage.getLikeCounts()).thenReturn(Map.of(1L, 5L, 2L, 3L, 3L, 0L));
+        index = new PopularityIndex(likesStorage);
+        index.rebuild();
+    }
+
+    @Test
+    public void shouldNotPresizeTopFromRequestedCount() {
+        Assertions.assertEquals(List.of(1L, 2L, 3L), index.getTop(Integer.MAX_VALUE));
+        Assertions.assertEquals(List.of(), index.getTop(-1));
+    }
+
+    @Test
+    public void shouldRankByLikesThenById() {
+        index.onFilm(new FilmEvent(4L, FilmEvent.Type.ADDED, null));
+        index.onLike(new LikeEvent(2L, 1L, true));
+        index.onLike(new LikeEvent(2L, 2L, true));
+
+        Assertions.assertEquals(List.of(1L, 2L, 3L, 4L), index.getTop(10));
+        Assertions.assertEquals(List.of(1L, 2L), index.getTop(2));
+
+        index.onLike(new LikeEvent(2L, 3L, true));
+        index.onFilm(new FilmEvent(1L, FilmEvent.Type.DELETED, null));
+
+        Assertions.assertEquals(List.of(2L, 3L, 4L), index.getTop(10));
+    }
+
+    @Test
+    public void shouldNotLoseConcurrentLikesOnSameFilm() throws InterruptedException {
+        int threads = 8;
+        int likesPerThread = 1000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        for (int t = 0; t < threads; t++) {
+            long userOffset = (long) t * likesPerThread;
+            executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < likesPerThread; i++) {
+                    index.onLike(new LikeEvent(3L, userOffset + i, true));
+                    index.getTop(3);
+                }
+                return null;
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        Assertions.assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+
+        Assertions.assertEquals(threads * likesPerThread, index.getScore(3L));
+        Assertions.assertEquals(List.of(3L, 1L, 2L), index.getTop(10));
+    }
+}
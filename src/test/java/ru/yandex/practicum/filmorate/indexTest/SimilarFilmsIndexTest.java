@@ -0,0 +1,75 @@
+package ru.yandex.practicum.filmorate.indexTest;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import ru.yandex.practicum.filmorate.index.SimilarFilmsIndex;
+import ru.yandex.practicum.filmorate.model.Like;
+import ru.yandex.practicum.filmorate.storage.likes.LikesStorage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.mockito.ArgumentMatchers.any;
+
+public class SimilarFilmsIndexTest {
+    private final List<Like> likes = new ArrayList<>();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final SimilarFilmsIndex index = createIndex();
+
+    @Test
+    public void shouldRankByJaccardAndSwapSnapshotOnRecompute() {
+        likes.addAll(List.of(new Like(1L, 1L), new Like(1L, 2L), new Like(1L, 3L),
+                new Like(2L, 1L), new Like(2L, 2L), new Like(2L, 3L),
+                new Like(3L, 1L), new Like(3L, 4L), new Like(3L, 5L),
+                new Like(4L, 6L)));
+        Assertions.assertEquals(List.of(), index.getSimilar(1L, 10));
+
+        index.recompute();
+        SimilarFilmsIndex.Snapshot first = index.getSnapshot();
+
+        Assertions.assertEquals(List.of(2L, 3L), index.getSimilar(1L, 10));
+        Assertions.assertEquals(List.of(2L), index.getSimilar(1L, 1));
+        Assertions.assertEquals(List.of(1L, 2L), index.getSimilar(3L, 10));
+        Assertions.assertEquals(List.of(), index.getSimilar(4L, 10));
+        Assertions.assertNotNull(first.getComputedAt());
+
+        likes.add(new Like(4L, 1L));
+        Assertions.assertEquals(List.of(2L, 3L), index.getSimilar(1L, 10));
+        index.recompute();
+
+        Assertions.assertNotSame(first, index.getSnapshot());
+        Assertions.assertEquals(List.of(2L, 4L, 3L), index.getSimilar(1L, 10));
+        Assertions.assertEquals(2, meterRegistry.get("filmorate.similar.films.job")
+                .tag("outcome", "success").timer().count());
+        Assertions.assertTrue(meterRegistry.get("filmorate.similar.films.job")
+                .tag("outcome", "success").timer().totalTime(TimeUnit.NANOSECONDS) > 0);
+    }
+
+    @Test
+    public void shouldSpreadLargeCatalogOverForkJoinTasks() {
+        int films = 1000;
+        for (long filmId = 1; filmId <= films; filmId++) {
+            likes.add(new Like(filmId, filmId));
+            likes.add(new Like(filmId, filmId + 1));
+        }
+        index.recompute();
+
+        Assertions.assertEquals(films, index.getSnapshot().getSimilarFilms().size());
+        Assertions.assertEquals(List.of(499L, 501L), index.getSimilar(500L, 10));
+        Assertions.assertEquals(List.of(2L), index.getSimilar(1L, 10));
+    }
+
+    private SimilarFilmsIndex createIndex() {
+        LikesStorage likesStorage = Mockito.mock(LikesStorage.class);
+        Mockito.doAnswer(invocation -> {
+            Consumer<Like> action = invocation.getArgument(0);
+            likes.forEach(action);
+            return null;
+        }).when(likesStorage).streamLikes(any());
+        return new SimilarFilmsIndex(likesStorage, meterRegistry, 20, 0);
+    }
+}
@@ -0,0 +1,66 @@
+package ru.yandex.practicum.filmorate.metricsTest;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.RequestBuilder;
+import ru.yandex.practicum.filmorate.metrics.RequestQueryMetricsFilter;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+
+@SpringBootTest(properties = "filmorate.query-budget.expose-headers=true")
+@AutoConfigureMockMvc
+@AutoConfigureTestDatabase
+public class QueryBudgetTest {
+    @Autowired
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    public void createData() throws Exception {
+        for (int i = 1; i <= 3; i++) {
+            perform(post("/users").contentType(MediaType.APPLICATION_JSON).content(String.format(
+                    "{\"login\":\"user%d\",\"name\":\"u\",\"email\":\"user%d@mail.ru\",\"birthday\":\"1990-01-01\"}", i, i)));
+            perform(post("/films").contentType(MediaType.APPLICATION_JSON).content(String.format(
+                    "{\"name\":\"film%d\",\"description\":\"d\",\"releaseDate\":\"2000-01-01\",\"duration\":90,"
+                            + "\"mpa\":{\"id\":1},\"genres\":[{\"id\":1},{\"id\":2}]}", i)));
+        }
+        perform(put("/films/1/like/1"));
+        perform(put("/films/2/like/2"));
+        perform(put("/users/1/friends/2"));
+        perform(put("/users/1/friends/3"));
+    }
+
+    @Test
+    public void shouldStayWithinQueryBudget() throws Exception {
+        assertQueryCountAtMost(2, get("/films"));
+        assertQueryCountAtMost(2, get("/films/2"));
+        assertQueryCountAtMost(2, get("/films/popular?count=3"));
+        assertQueryCountAtMost(2, get("/films/facets?genre=1&limit=2"));
+        assertQueryCountAtMost(2, get("/users/1/friends"));
+        assertQueryCountAtMost(2, get("/users/1/friends/common/2"));
+        assertQueryCountAtMost(5, put("/films/3/like/3"));
+    }
+
+    private void assertQueryCountAtMost(int maxStatements, RequestBuilder request) throws Exception {
+        MvcResult result = perform(request);
+        String header = result.getResponse().getHeader(RequestQueryMetricsFilter.QUERY_COUNT_HEADER);
+        Assertions.assertNotNull(header);
+        Assertions.assertTrue(Integer.parseInt(header) <= maxStatements, () -> String.format("%s %s: %s SQL-запросов",
+                result.getRequest().getMethod(), result.getRequest().getRequestURI(), header));
+    }
+
+    private MvcResult perform(RequestBuilder request) throws Exception {
+        MvcResult result = mockMvc.perform(request).andReturn();
+        Assertions.assertTrue(result.getResponse().getStatus() < 400, result.getResponse().getContentAsString());
+        return result;
+    }
+}
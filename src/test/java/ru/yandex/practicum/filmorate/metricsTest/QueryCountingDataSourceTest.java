@@ -0,0 +1,45 @@
+package ru.yandex.practicum.filmorate.metricsTest;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import ru.yandex.practicum.filmorate.metrics.QueryCountingDataSource;
+import ru.yandex.practicum.filmorate.metrics.RequestQueryStats;
+
+import java.util.List;
+
+public class QueryCountingDataSourceTest {
+    private final QueryCountingDataSource dataSource = new QueryCountingDataSource(
+            new DriverManagerDataSource("jdbc:h2:mem:query-counting;DB_CLOSE_DELAY=-1", "sa", ""));
+    private final JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+
+    @AfterEach
+    public void finishRequest() {
+        RequestQueryStats.finish();
+        jdbcTemplate.execute("DROP TABLE IF EXISTS items");
+    }
+
+    @Test
+    public void shouldCountStatementsAndBatches() {
+        jdbcTemplate.execute("CREATE TABLE items (id INT PRIMARY KEY)");
+        RequestQueryStats stats = RequestQueryStats.start();
+
+        jdbcTemplate.batchUpdate("INSERT INTO items VALUES (?)", List.of(new Object[]{1}, new Object[]{2}));
+        jdbcTemplate.update("INSERT INTO items VALUES (?)", 3);
+        Assertions.assertEquals(3, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM items", Integer.class));
+
+        Assertions.assertEquals(3, stats.getStatements());
+        Assertions.assertEquals(4, dataSource.getStatementCount());
+        Assertions.assertEquals(2, stats.getShapes().get("INSERT INTO items VALUES (?)"));
+    }
+
+    @Test
+    public void shouldGroupStatementsByShape() {
+        Assertions.assertEquals("SELECT * FROM films WHERE id IN (?) AND name = ? LIMIT ?",
+                RequestQueryStats.shapeOf("SELECT *  FROM films\n WHERE id IN (1, 2,3) AND name = 'it''s' LIMIT ?"));
+        Assertions.assertEquals("INSERT INTO genre2 (filmId, genreId) VALUES (?)",
+                RequestQueryStats.shapeOf("INSERT INTO genre2 (filmId, genreId) VALUES (?, ?)"));
+    }
+}
@@ -0,0 +1,27 @@
+package ru.yandex.practicum.filmorate.modelTest;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+import ru.yandex.practicum.filmorate.model.Page;
+
+public class PageTest {
+    @Test
+    public void shouldDefaultAndCapLimit() {
+        Assertions.assertEquals(Page.DEFAULT_LIMIT, Page.checkLimit(null));
+        Assertions.assertEquals(5, Page.checkLimit(5));
+        Assertions.assertEquals(Page.MAX_LIMIT, Page.checkLimit(Integer.MAX_VALUE));
+        Assertions.assertEquals(10, Page.checkLimit(null, 10, 100));
+        Assertions.assertEquals(100, Page.checkLimit(500, 10, 100));
+    }
+
+    @Test
+    public void shouldRejectNonPositiveLimit() {
+        for (int limit : new int[]{-1, 0}) {
+            ResponseStatusException e = Assertions.assertThrows(ResponseStatusException.class,
+                    () -> Page.checkLimit(limit));
+            Assertions.assertEquals(HttpStatus.BAD_REQUEST, e.getStatus());
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package ru.yandex.practicum.filmorate.serviceTest;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.model.BatchItemResult;
+import ru.yandex.practicum.filmorate.service.BatchProcessor;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class BatchProcessorTest {
+    private final BatchProcessor batchProcessor = new BatchProcessor(null, 2);
+
+    @Test
+    public void shouldFailChunkWhenWriterReturnsFewerResults() {
+        Map<Integer, Long> written = new HashMap<>();
+        Map<Integer, BatchItemResult> failed = new HashMap<>();
+        List<Long> retried = new ArrayList<>();
+
+        batchProcessor.execute(List.of(10L, 20L, 30L), List.of(0, 1, 2),
+                chunk -> chunk.size() == 2 ? List.of(chunk.get(0)) : chunk,
+                item -> {
+                    retried.add(item);
+                    return item;
+                },
+                written::put, failed::put);
+
+        Assertions.assertEquals(Map.of(2, 30L), written);
+        Assertions.assertEquals(2, failed.size());
+        Assertions.assertEquals(500, failed.get(0).getStatus());
+        Assertions.assertEquals(500, failed.get(1).getStatus());
+        Assertions.assertTrue(retried.isEmpty(), "записанный чанк не должен повторяться поштучно");
+    }
+}
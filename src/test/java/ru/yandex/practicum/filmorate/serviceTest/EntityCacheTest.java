@@ -0,0 +1,104 @@
+package ru.yandex.practicum.filmorate.serviceTest;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.EntityCache;
+import ru.yandex.practicum.filmorate.storage.event.FilmEvent;
+import ru.yandex.practicum.filmorate.storage.event.LikeEvent;
+import ru.yandex.practicum.filmorate.storage.event.UserEvent;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.user.UserStorage;
+
+import java.util.Optional;
+
+public class EntityCacheTest {
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private FilmStorage filmStorage;
+    private UserStorage userStorage;
+
+    @BeforeEach
+    public void createStorages() {
+        filmStorage = Mockito.mock(FilmStorage.class);
+        userStorage = Mockito.mock(UserStorage.class);
+        Mockito.when(filmStorage.getById(1L)).thenReturn(Optional.of(Film.builder().id(1L).name("film").build()));
+        Mockito.when(filmStorage.getById(2L)).thenReturn(Optional.empty());
+        Mockito.when(userStorage.getById(1L)).thenReturn(Optional.of(User.builder().id(1L).login("user").build()));
+    }
+
+    @Test
+    public void shouldCacheUntilStorageEvent() {
+        EntityCache cache = new EntityCache(filmStorage, userStorage, meterRegistry, 100, 60_000);
+
+        Assertions.assertSame(cache.getFilm(1L).get(), cache.getFilm(1L).get());
+        Assertions.assertTrue(cache.getFilm(2L).isEmpty());
+        Assertions.assertTrue(cache.getFilm(2L).isEmpty());
+        cache.getUser(1L);
+        cache.getUser(1L);
+        Mockito.verify(filmStorage, Mockito.times(1)).getById(1L);
+        Mockito.verify(filmStorage, Mockito.times(1)).getById(2L);
+        Mockito.verify(userStorage, Mockito.times(1)).getById(1L);
+
+        cache.onLike(new LikeEvent(1L, 1L, true));
+        cache.onFilm(new FilmEvent(2L, FilmEvent.Type.ADDED, null));
+        cache.onUser(new UserEvent(1L, UserEvent.Type.UPDATED));
+        cache.getFilm(1L);
+        cache.getFilm(2L);
+        cache.getUser(1L);
+        Mockito.verify(filmStorage, Mockito.times(2)).getById(1L);
+        Mockito.verify(filmStorage, Mockito.times(2)).getById(2L);
+        Mockito.verify(userStorage, Mockito.times(2)).getById(1L);
+
+        Assertions.assertEquals(2, meterRegistry.get("cache.gets").tag("cache", "films")
+                .tag("result", "hit").functionCounter().count());
+        Assertions.assertEquals(4, meterRegistry.get("cache.gets").tag("cache", "films")
+                .tag("result", "miss").functionCounter().count());
+    }
+
+    @Test
+    public void shouldCheckExistenceWithoutLoadingEntities() {
+        EntityCache cache = new EntityCache(filmStorage, userStorage, meterRegistry, 100, 60_000);
+        Mockito.when(filmStorage.exists(3L)).thenReturn(true);
+
+        Assertions.assertTrue(cache.filmExists(3L));
+        Assertions.assertTrue(cache.filmExists(3L));
+        cache.getFilm(1L);
+        cache.getFilm(2L);
+        Assertions.assertTrue(cache.filmExists(1L));
+        Assertions.assertFalse(cache.filmExists(2L));
+
+        Mockito.verify(filmStorage, Mockito.times(2)).exists(3L);
+        Mockito.verify(filmStorage, Mockito.never()).getById(3L);
+        Mockito.verify(filmStorage, Mockito.never()).exists(1L);
+        Mockito.verify(filmStorage, Mockito.never()).exists(2L);
+    }
+
+    @Test
+    public void shouldExpireNegativeLookupsAndBoundSize() throws InterruptedException {
+        EntityCache cache = new EntityCache(filmStorage, userStorage, meterRegistry, 10, 1);
+
+        cache.getFilm(2L);
+        Thread.sleep(20);
+        cache.getFilm(2L);
+        cache.getFilm(1L);
+        Thread.sleep(20);
+        cache.getFilm(1L);
+
+        Mockito.verify(filmStorage, Mockito.times(2)).getById(2L);
+        Mockito.verify(filmStorage, Mockito.times(1)).getById(1L);
+
+        Mockito.when(filmStorage.getById(Mockito.anyLong()))
+                .thenAnswer(invocation -> Optional.of(Film.builder().id(invocation.getArgument(0)).build()));
+        for (long id = 100; id < 200; id++) {
+            cache.getFilm(id);
+        }
+        cache.cleanUp();
+        Assertions.assertEquals(10, meterRegistry.get("cache.size").tag("cache", "films").gauge().value());
+        Assertions.assertTrue(meterRegistry.get("cache.evictions").tag("cache", "films")
+                .functionCounter().count() >= 90);
+    }
+}
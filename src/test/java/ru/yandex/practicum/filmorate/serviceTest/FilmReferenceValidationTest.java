@@ -0,0 +1,69 @@
+package ru.yandex.practicum.filmorate.serviceTest;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+import ru.yandex.practicum.filmorate.model.BatchItemResult;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.MPA;
+import ru.yandex.practicum.filmorate.service.FilmService;
+
+import java.time.LocalDate;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+@SpringBootTest
+@AutoConfigureTestDatabase
+public class FilmReferenceValidationTest {
+    @Autowired
+    private FilmService filmService;
+
+    @Test
+    public void shouldRejectUnknownReferencesBeforeWriting() {
+        int filmsBefore = filmService.getAllFilms().size();
+
+        assertStatus(HttpStatus.NOT_FOUND, () -> filmService.addFilm(film(99, 1)));
+        assertStatus(HttpStatus.NOT_FOUND, () -> filmService.addFilm(film(1, 99)));
+        assertStatus(HttpStatus.BAD_REQUEST, () -> filmService.addFilm(film(null, 1)));
+        Assertions.assertEquals(filmsBefore, filmService.getAllFilms().size());
+
+        Film saved = filmService.addFilm(film(1, 2));
+        Assertions.assertEquals("G", saved.getMpa().getName());
+        Assertions.assertEquals(1, saved.getGenres().size());
+        saved.setMpa(MPA.builder().id(42).build());
+        assertStatus(HttpStatus.NOT_FOUND, () -> filmService.updateFilm(saved));
+        Assertions.assertEquals(1, filmService.getFilmById(saved.getId()).getMpa().getId());
+    }
+
+    @Test
+    public void shouldReportUnknownReferencesPerBatchItem() {
+        List<BatchItemResult> results = filmService.addFilms(List.of(film(1, 1), film(99, 1), film(1, 99)));
+
+        Assertions.assertEquals(HttpStatus.OK.value(), results.get(0).getStatus());
+        Assertions.assertEquals(HttpStatus.NOT_FOUND.value(), results.get(1).getStatus());
+        Assertions.assertEquals(HttpStatus.NOT_FOUND.value(), results.get(2).getStatus());
+    }
+
+    private void assertStatus(HttpStatus status, Runnable action) {
+        ResponseStatusException e = Assertions.assertThrows(ResponseStatusException.class, action::run);
+        Assertions.assertEquals(status, e.getStatus());
+    }
+
+    private Film film(Integer mpaId, int genreId) {
+        LinkedHashSet<Genre> genres = new LinkedHashSet<>();
+        genres.add(Genre.builder().id(genreId).build());
+        return Film.builder()
+                .name("film")
+                .description("description")
+                .releaseDate(LocalDate.of(2001, 1, 1))
+                .duration(90)
+                .mpa(mpaId == null ? null : MPA.builder().id(mpaId).build())
+                .genres(genres)
+                .build();
+    }
+}
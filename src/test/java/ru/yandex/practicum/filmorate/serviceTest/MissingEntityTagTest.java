@@ -0,0 +1,55 @@
+package ru.yandex.practicum.filmorate.serviceTest;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import ru.yandex.practicum.filmorate.index.EntityVersions;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@AutoConfigureTestDatabase
+public class MissingEntityTagTest {
+    private static final long MISSING_ID = 999_999L;
+
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private EntityVersions entityVersions;
+
+    @Test
+    public void shouldNotRevalidateMissingEntities() throws Exception {
+        assertNotFoundWithoutTag("/films/" + MISSING_ID, entityVersions.getFilmTag(MISSING_ID));
+        assertNotFoundWithoutTag("/users/" + MISSING_ID, entityVersions.getUserTag(MISSING_ID));
+        assertNotFoundWithoutTag("/users/" + MISSING_ID + "/friends", entityVersions.getFriendsTag(MISSING_ID));
+    }
+
+    @Test
+    public void shouldRevalidateExistingFilm() throws Exception {
+        MvcResult created = mockMvc.perform(post("/films").contentType(MediaType.APPLICATION_JSON).content(
+                "{\"name\":\"tagged\",\"description\":\"d\",\"releaseDate\":\"2000-01-01\",\"duration\":90,"
+                        + "\"mpa\":{\"id\":1}}")).andReturn();
+        String id = created.getResponse().getContentAsString().replaceAll(".*\"id\":(\\d+).*", "$1");
+
+        String tag = mockMvc.perform(get("/films/" + id)).andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        Assertions.assertNotNull(tag);
+        Assertions.assertEquals(304, mockMvc.perform(get("/films/" + id).header(HttpHeaders.IF_NONE_MATCH, tag))
+                .andReturn().getResponse().getStatus());
+    }
+
+    private void assertNotFoundWithoutTag(String uri, String tag) throws Exception {
+        MvcResult result = mockMvc.perform(get(uri).header(HttpHeaders.IF_NONE_MATCH, "\"" + tag + "\""))
+                .andReturn();
+        Assertions.assertEquals(404, result.getResponse().getStatus(), uri);
+        Assertions.assertNull(result.getResponse().getHeader(HttpHeaders.ETAG), uri);
+    }
+}
@@ -0,0 +1,118 @@
+package ru.yandex.practicum.filmorate.serviceTest;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.ObjectProvider;
+import ru.yandex.practicum.filmorate.index.PopularityIndex;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.service.PopularFilmsCache;
+import ru.yandex.practicum.filmorate.storage.event.FilmEvent;
+import ru.yandex.practicum.filmorate.storage.event.LikeEvent;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.likes.LikesStorage;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.mockito.ArgumentMatchers.anyList;
+
+public class PopularFilmsCacheTest {
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private FilmStorage filmStorage;
+    private PopularityIndex popularityIndex;
+
+    @BeforeEach
+    public void createStorage() {
+        filmStorage = Mockito.mock(FilmStorage.class);
+        Mockito.when(filmStorage.getByIds(anyList())).thenAnswer(invocation -> {
+            List<Long> ids = invocation.getArgument(0);
+            return ids.stream().map(this::film).collect(Collectors.toList());
+        });
+        LikesStorage likesStorage = Mockito.mock(LikesStorage.class);
+        Mockito.when(likesStorage.getLikeCounts()).thenReturn(Map.of(1L, 3L, 2L, 2L, 3L, 1L));
+        popularityIndex = new PopularityIndex(likesStorage);
+        popularityIndex.rebuild();
+    }
+
+    @Test
+    public void shouldInvalidateOnlyListsWithChangedFilm() {
+        PopularFilmsCache cache = createCache(popularityIndex, 0);
+
+        Assertions.assertEquals(List.of(1L, 2L), ids(cache.get(2)));
+        Assertions.assertEquals(List.of(1L, 2L), ids(cache.get(2)));
+        Mockito.verify(filmStorage, Mockito.times(1)).getByIds(anyList());
+
+        likeThroughIndex(cache, 3L, true);
+        Assertions.assertEquals(List.of(1L, 2L), ids(cache.get(2)));
+        Mockito.verify(filmStorage, Mockito.times(1)).getByIds(anyList());
+
+        likeThroughIndex(cache, 3L, true);
+        likeThroughIndex(cache, 3L, true);
+        Assertions.assertEquals(List.of(3L, 1L), ids(cache.get(2)));
+        Mockito.verify(filmStorage, Mockito.times(2)).getByIds(anyList());
+
+        likeThroughIndex(cache, 1L, false);
+        cache.onFilm(new FilmEvent(2L, FilmEvent.Type.UPDATED, null));
+        Assertions.assertEquals(List.of(3L, 1L), ids(cache.get(2)));
+        Mockito.verify(filmStorage, Mockito.times(3)).getByIds(anyList());
+
+        Assertions.assertEquals(0.4, meterRegistry.get("filmorate.popular.cache.hit.ratio").gauge().value());
+        Assertions.assertEquals(3, meterRegistry.get("filmorate.popular.cache.rebuild").timer().count());
+    }
+
+    @Test
+    public void shouldServeStaleListWithinBoundWithoutIndex() {
+        Mockito.when(filmStorage.getPopular(2)).thenReturn(List.of(film(1L), film(2L)));
+        PopularFilmsCache strict = createCache(null, 0);
+        PopularFilmsCache relaxed = createCache(null, 60_000);
+
+        strict.get(2);
+        relaxed.get(2);
+        strict.onLike(new LikeEvent(5L, 1L, true));
+        relaxed.onLike(new LikeEvent(5L, 1L, true));
+        strict.get(2);
+        relaxed.get(2);
+
+        Mockito.verify(filmStorage, Mockito.times(3)).getPopular(2);
+        Assertions.assertEquals(1, meterRegistry.get("filmorate.popular.cache.requests")
+                .tag("result", "stale").counter().count());
+    }
+
+    @Test
+    public void shouldShareListsAcrossNearbyCounts() {
+        PopularFilmsCache cache = createCache(popularityIndex, 0);
+
+        for (int count = 1; count <= 100; count++) {
+            Assertions.assertEquals(Math.min(count, 3), cache.get(count).size());
+        }
+        Assertions.assertEquals(List.of(1L), ids(cache.get(1)));
+        Assertions.assertEquals(List.of(1L, 2L, 3L), ids(cache.get(3)));
+
+        Mockito.verify(filmStorage, Mockito.times(8)).getByIds(anyList());
+    }
+
+    private void likeThroughIndex(PopularFilmsCache cache, Long filmId, boolean liked) {
+        LikeEvent event = new LikeEvent(filmId, 100L, liked);
+        popularityIndex.onLike(event);
+        cache.onLike(event);
+    }
+
+    @SuppressWarnings("unchecked")
+    private PopularFilmsCache createCache(PopularityIndex index, long maxStalenessMs) {
+        ObjectProvider<PopularityIndex> provider = Mockito.mock(ObjectProvider.class);
+        Mockito.when(provider.getIfAvailable()).thenReturn(index);
+        return new PopularFilmsCache(filmStorage, provider, meterRegistry, maxStalenessMs);
+    }
+
+    private List<Long> ids(List<Film> films) {
+        return films.stream().map(Film::getId).collect(Collectors.toList());
+    }
+
+    private Film film(Long id) {
+        return Film.builder().id(id).name("film" + id).build();
+    }
+}
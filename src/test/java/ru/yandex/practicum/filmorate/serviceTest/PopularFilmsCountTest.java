@@ -0,0 +1,45 @@
+package ru.yandex.practicum.filmorate.serviceTest;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.MPA;
+import ru.yandex.practicum.filmorate.service.FilmService;
+
+import java.time.LocalDate;
+
+@SpringBootTest
+@AutoConfigureTestDatabase
+public class PopularFilmsCountTest {
+    @Autowired
+    private FilmService filmService;
+
+    @Test
+    public void shouldCapHugeCount() {
+        filmService.addFilm(Film.builder()
+                .name("popular")
+                .description("description")
+                .releaseDate(LocalDate.of(2001, 1, 1))
+                .duration(90)
+                .mpa(MPA.builder().id(1).build())
+                .build());
+
+        int films = filmService.getAllFilms().size();
+        Assertions.assertEquals(Math.min(films, FilmService.MAX_POPULAR_COUNT),
+                filmService.getListPopularFilms(2_000_000_000).size());
+    }
+
+    @Test
+    public void shouldRejectNonPositiveCount() {
+        for (int count : new int[]{-1, 0}) {
+            ResponseStatusException e = Assertions.assertThrows(ResponseStatusException.class,
+                    () -> filmService.getListPopularFilms(count));
+            Assertions.assertEquals(HttpStatus.BAD_REQUEST, e.getStatus());
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package ru.yandex.practicum.filmorate.storageTest;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import ru.yandex.practicum.filmorate.index.EntityVersions;
+import ru.yandex.practicum.filmorate.index.PopularityIndex;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.MPA;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.likes.BufferedLikesStorage;
+import ru.yandex.practicum.filmorate.storage.user.UserStorage;
+
+import java.time.LocalDate;
+import java.util.Set;
+
+/**
+ * Отложенная запись лайков: до сброса буфера лайк виден только в чтениях лайков фильма,
+ * а рейтинг фильма, индекс популярности и версии ETag обновляются только после сброса.
+ */
+@SpringBootTest(properties = {
+        "filmorate.likes.write-behind.enabled=true",
+        "filmorate.likes.write-behind.flush-interval-ms=600000"
+})
+@AutoConfigureTestDatabase
+public class BufferedLikesLagTest {
+    @Autowired
+    private BufferedLikesStorage likesStorage;
+    @Autowired
+    private FilmStorage filmStorage;
+    @Autowired
+    private UserStorage userStorage;
+    @Autowired
+    private PopularityIndex popularityIndex;
+    @Autowired
+    private EntityVersions entityVersions;
+
+    @Test
+    public void shouldApplyDerivedStateOnlyAfterFlush() {
+        Long filmId = filmStorage.add(Film.builder().name("lag").description("d").releaseDate(LocalDate.of(2000, 1, 1))
+                .duration(90).mpa(MPA.builder().id(1).build()).build()).getId();
+        Long userId = userStorage.add(User.builder().email("lag@mail.ru").login("lag").name("lag")
+                .birthday(LocalDate.of(1990, 1, 1)).build()).getId();
+        String tag = entityVersions.getFilmTag(filmId);
+
+        likesStorage.addLike(filmId, userId);
+
+        Assertions.assertEquals(Set.of(userId.intValue()), likesStorage.getLikesByFilmId(filmId));
+        Assertions.assertEquals(1, likesStorage.getAmountOfLikes(filmId, userId));
+        Assertions.assertEquals(0, filmStorage.getById(filmId).orElseThrow().getRate());
+        Assertions.assertEquals(0, popularityIndex.getScore(filmId));
+        Assertions.assertEquals(tag, entityVersions.getFilmTag(filmId));
+
+        likesStorage.flush();
+
+        Assertions.assertEquals(1, filmStorage.getById(filmId).orElseThrow().getRate());
+        Assertions.assertEquals(1, popularityIndex.getScore(filmId));
+        Assertions.assertNotEquals(tag, entityVersions.getFilmTag(filmId));
+    }
+}
@@ -0,0 +1,158 @@
+package ru.yandex.practicum.filmorate.storageTest;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.TransientDataAccessResourceException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import ru.yandex.practicum.filmorate.model.Like;
+import ru.yandex.practicum.filmorate.storage.event.FilmEvent;
+import ru.yandex.practicum.filmorate.storage.likes.BufferedLikesStorage;
+import ru.yandex.practicum.filmorate.storage.likes.LikesStorage;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.argThat;
+
+public class BufferedLikesStorageTest {
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private LikesStorage delegate;
+    private BufferedLikesStorage likesStorage;
+
+    @BeforeEach
+    public void createStorage() {
+        delegate = Mockito.mock(LikesStorage.class);
+        PlatformTransactionManager transactionManager = Mockito.mock(PlatformTransactionManager.class);
+        Mockito.when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        Mockito.when(delegate.getLikesByFilmId(1L)).thenReturn(Set.of(10));
+        likesStorage = new BufferedLikesStorage(delegate, transactionManager, meterRegistry, 60_000, 2, 100);
+    }
+
+    @AfterEach
+    public void shutdown() {
+        likesStorage.shutdown();
+    }
+
+    @Test
+    public void shouldCollapseOperationsOnSamePairAndFlushOnce() {
+        likesStorage.addLike(1L, 2L);
+        likesStorage.removeLike(1L, 2L);
+        likesStorage.addLike(1L, 2L);
+        likesStorage.removeLike(1L, 10L);
+
+        Assertions.assertEquals(Set.of(2), likesStorage.getLikesByFilmId(1L));
+        Assertions.assertEquals(1, likesStorage.getAmountOfLikes(1L, 2L));
+        Mockito.verify(delegate, Mockito.never()).addLikes(anyList());
+
+        likesStorage.flush();
+
+        Mockito.verify(delegate).addLikes(List.of(new Like(1L, 2L)));
+        Mockito.verify(delegate).removeLikes(List.of(new Like(1L, 10L)));
+        Mockito.verify(delegate, Mockito.never()).addLike(any(), any());
+    }
+
+    @Test
+    public void shouldKeepOperationsWhenFlushFails() {
+        Mockito.when(delegate.addLikes(anyList())).thenThrow(new TransientDataAccessResourceException("db down"));
+        Mockito.doThrow(new TransientDataAccessResourceException("db down")).when(delegate).addLike(1L, 2L);
+        likesStorage.addLike(1L, 2L);
+
+        Assertions.assertThrows(TransientDataAccessResourceException.class, likesStorage::flush);
+        Assertions.assertEquals(1, likesStorage.getAmountOfLikes(1L, 2L));
+
+        Mockito.reset(delegate);
+        likesStorage.flush();
+        Mockito.verify(delegate).addLikes(List.of(new Like(1L, 2L)));
+    }
+
+    @Test
+    public void shouldDropRejectedOperationAndApplyTheRestOneByOne() {
+        Mockito.when(delegate.addLikes(anyList())).thenThrow(new DataIntegrityViolationException("bad row"));
+        Mockito.doThrow(new DataIntegrityViolationException("bad row")).when(delegate).addLike(1L, 2L);
+        likesStorage.addLike(1L, 2L);
+        likesStorage.addLike(1L, 3L);
+
+        likesStorage.flush();
+
+        Mockito.verify(delegate).addLike(1L, 2L);
+        Mockito.verify(delegate).addLike(1L, 3L);
+        Mockito.reset(delegate);
+        likesStorage.flush();
+        Mockito.verifyNoInteractions(delegate);
+        Assertions.assertEquals(1, droppedCount("rejected"));
+    }
+
+    @Test
+    public void shouldDropOperationThatKeepsFailing() {
+        Mockito.when(delegate.addLikes(anyList())).thenThrow(new IllegalStateException("poison"));
+        Mockito.doThrow(new IllegalStateException("poison")).when(delegate).addLike(1L, 2L);
+        likesStorage.addLike(1L, 2L);
+
+        Assertions.assertThrows(IllegalStateException.class, likesStorage::flush);
+        Assertions.assertThrows(IllegalStateException.class, likesStorage::flush);
+        Assertions.assertEquals(1, likesStorage.getAmountOfLikes(1L, 2L));
+        likesStorage.flush();
+
+        Mockito.verify(delegate, Mockito.times(3)).addLike(1L, 2L);
+        Assertions.assertEquals(0, likesStorage.getAmountOfLikes(1L, 2L));
+        likesStorage.flush();
+        Mockito.verify(delegate, Mockito.times(3)).addLikes(anyList());
+        Assertions.assertEquals(1, droppedCount("retries"));
+    }
+
+    @Test
+    public void shouldDiscardBufferedOperationsOfDeletedFilm() {
+        likesStorage.addLike(1L, 2L);
+        likesStorage.addLike(3L, 2L);
+
+        likesStorage.onFilm(new FilmEvent(1L, FilmEvent.Type.DELETED, null));
+        likesStorage.flush();
+
+        Mockito.verify(delegate).addLikes(List.of(new Like(3L, 2L)));
+        Assertions.assertEquals(1, droppedCount("film_deleted"));
+    }
+
+    private double droppedCount(String reason) {
+        return meterRegistry.get("filmorate.likes.write-behind.dropped").tag("reason", reason).counter().count();
+    }
+
+    @Test
+    public void shouldRejectWhenBufferStaysFull() {
+        synchronized (likesStorage) {
+            likesStorage.addLike(1L, 2L);
+            likesStorage.addLike(1L, 3L);
+
+            Assertions.assertThrows(TransientDataAccessResourceException.class, () -> likesStorage.addLike(1L, 4L));
+            likesStorage.removeLike(1L, 2L);
+            Assertions.assertEquals(0, likesStorage.getAmountOfLikes(1L, 2L));
+            Assertions.assertEquals(0, likesStorage.getAmountOfLikes(1L, 4L));
+        }
+    }
+
+    @Test
+    public void shouldFlushFullBufferOutsideCallerThread() {
+        AtomicReference<Thread> writer = new AtomicReference<>();
+        Mockito.when(delegate.addLikes(anyList())).thenAnswer(invocation -> {
+            writer.set(Thread.currentThread());
+            return List.of(true, true);
+        });
+        likesStorage.addLike(1L, 2L);
+        likesStorage.addLike(1L, 3L);
+
+        likesStorage.addLike(1L, 4L);
+
+        Mockito.verify(delegate, Mockito.timeout(1000)).addLikes(
+                argThat(likes -> Set.copyOf(likes).equals(Set.of(new Like(1L, 2L), new Like(1L, 3L)))));
+        Assertions.assertNotEquals(Thread.currentThread(), writer.get());
+        Assertions.assertEquals(1, likesStorage.getAmountOfLikes(1L, 4L));
+    }
+}
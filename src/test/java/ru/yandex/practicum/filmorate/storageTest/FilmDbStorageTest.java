@@ -8,13 +8,19 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.context.SpringBootTest;
+import ru.yandex.practicum.filmorate.metrics.RequestQueryStats;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
 import ru.yandex.practicum.filmorate.model.MPA;
 import ru.yandex.practicum.filmorate.storage.film.FilmDbStorage;
 
 import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
 
@@ -132,4 +138,58 @@ public class FilmDbStorageTest {
         List<Film> result = (List<Film>) filmStorage.getAll();
         Assertions.assertEquals(3, result.size());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void findExisting() {
+        Film film = filmStorage.add(Film.builder()
+                .name("name_test_exists")
+                .description("des_test_exists")
+                .releaseDate(LocalDate.of(2015, 3, 1))
+                .duration(70)
+                .mpa(MPA.builder().id(1).build())
+                .build());
+
+        Assertions.assertEquals(Set.of(film.getId()),
+                filmStorage.findExisting(Arrays.asList(film.getId(), -1L, null, film.getId())));
+        Assertions.assertTrue(filmStorage.findExisting(List.of()).isEmpty());
+    }
+
+    @Test
+    public void updateWritesOnlyChangedGenres() {
+        Film film = filmStorage.add(Film.builder()
+                .name("name_test_genres")
+                .description("des_test_genres")
+                .releaseDate(LocalDate.of(2016, 4, 1))
+                .duration(80)
+                .mpa(MPA.builder().id(1).build())
+                .genres(genres(1, 2))
+                .build());
+
+        film.setGenres(genres(2, 3));
+        filmStorage.update(film);
+        Assertions.assertEquals(List.of(2, 3), genreIds(film.getId()));
+
+        RequestQueryStats stats = RequestQueryStats.start();
+        try {
+            filmStorage.update(film);
+        } finally {
+            RequestQueryStats.finish();
+        }
+        Assertions.assertEquals(2, stats.getStatements());
+        Assertions.assertEquals(List.of(2, 3), genreIds(film.getId()));
+    }
+
+    private List<Integer> genreIds(Long filmId) {
+        return filmStorage.getById(filmId).orElseThrow().getGenres().stream()
+                .map(Genre::getId)
+                .collect(Collectors.toList());
+    }
+
+    private LinkedHashSet<Genre> genres(int... ids) {
+        LinkedHashSet<Genre> genres = new LinkedHashSet<>();
+        for (int id : ids) {
+            genres.add(Genre.builder().id(id).build());
+        }
+        return genres;
+    }
+}
@@ -0,0 +1,54 @@
+package ru.yandex.practicum.filmorate.storageTest;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.event.ApplicationEvents;
+import org.springframework.test.context.event.RecordApplicationEvents;
+import org.springframework.test.web.servlet.MockMvc;
+import ru.yandex.practicum.filmorate.storage.event.UserEvent;
+import ru.yandex.practicum.filmorate.storage.user.UserStorage;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = "filmorate.storage=memory")
+@AutoConfigureMockMvc
+@AutoConfigureTestDatabase
+@RecordApplicationEvents
+public class InMemoryBatchAddTest {
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private UserStorage userStorage;
+    @Autowired
+    private ApplicationEvents events;
+
+    @Test
+    public void shouldReportDuplicateLoginWithoutStoringUsersTwice() throws Exception {
+        int usersBefore = userStorage.getAll().size();
+
+        mockMvc.perform(post("/users/batch").contentType(MediaType.APPLICATION_JSON).content("["
+                        + user("batch1") + "," + user("batch2") + "," + user("batch1").replace("batch1@", "other@")
+                        + "]"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].status").value(200))
+                .andExpect(jsonPath("$[1].status").value(200))
+                .andExpect(jsonPath("$[2].status").value(409));
+
+        Assertions.assertEquals(usersBefore + 2, userStorage.getAll().size());
+        Assertions.assertEquals(2, events.stream(UserEvent.class)
+                .filter(event -> event.getType() == UserEvent.Type.ADDED)
+                .count());
+    }
+
+    private String user(String login) {
+        return String.format("{\"login\":\"%s\",\"name\":\"u\",\"email\":\"%s@mail.ru\",\"birthday\":\"1990-01-01\"}",
+                login, login);
+    }
+}
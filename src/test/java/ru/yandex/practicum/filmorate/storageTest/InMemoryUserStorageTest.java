@@ -0,0 +1,107 @@
+package ru.yandex.practicum.filmorate.storageTest;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DuplicateKeyException;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.event.FriendshipEvent;
+import ru.yandex.practicum.filmorate.storage.user.InMemoryUserStorage;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class InMemoryUserStorageTest {
+    private final InMemoryUserStorage userStorage = new InMemoryUserStorage(event -> { });
+
+    @Test
+    public void shouldAllocateUniqueIdsAndKeepFriendsUnderConcurrentWrites() throws InterruptedException {
+        int threads = 8;
+        int usersPerThread = 500;
+        User hub = userStorage.add(user("hub"));
+        Set<Long> ids = ConcurrentHashMap.newKeySet();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+            executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < usersPerThread; i++) {
+                    User user = userStorage.add(user("user" + thread + "_" + i));
+                    ids.add(user.getId());
+                    userStorage.addFriend(hub.getId(), user.getId());
+                    userStorage.addFriend(user.getId(), hub.getId());
+                }
+                return null;
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        Assertions.assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+
+        Assertions.assertEquals(threads * usersPerThread, ids.size());
+        Assertions.assertEquals(threads * usersPerThread + 1, userStorage.getAll().size());
+        Assertions.assertEquals(threads * usersPerThread, userStorage.getFriends(hub.getId()).size());
+
+        Long friendId = ids.iterator().next();
+        userStorage.delete(friendId);
+        Assertions.assertEquals(threads * usersPerThread - 1, userStorage.getFriends(hub.getId()).size());
+        Assertions.assertEquals(List.of(), userStorage.getFriends(friendId));
+    }
+
+    @Test
+    public void shouldRejectDuplicateLoginLikeDatabase() {
+        userStorage.add(user("login"));
+        User duplicate = user("login");
+        duplicate.setEmail("other@mail.ru");
+
+        Assertions.assertThrows(DuplicateKeyException.class, () -> userStorage.add(duplicate));
+        Assertions.assertEquals(1, userStorage.getAll().size());
+        Assertions.assertDoesNotThrow(() -> userStorage.add(user("other")));
+    }
+
+    @Test
+    public void shouldPublishFriendshipEventsAfterReleasingLocks() {
+        AtomicReference<InMemoryUserStorage> storage = new AtomicReference<>();
+        List<Boolean> lockedOut = new CopyOnWriteArrayList<>();
+        storage.set(new InMemoryUserStorage(event -> {
+            if (event instanceof FriendshipEvent) {
+                FriendshipEvent friendship = (FriendshipEvent) event;
+                CompletableFuture<Boolean> reader = CompletableFuture.supplyAsync(() -> {
+                    storage.get().removeFriend(friendship.getFriendId(), friendship.getUserId());
+                    return true;
+                });
+                try {
+                    reader.get(5, TimeUnit.SECONDS);
+                    lockedOut.add(false);
+                } catch (Exception e) {
+                    lockedOut.add(true);
+                }
+            }
+        }));
+        User first = storage.get().add(user("first"));
+        User second = storage.get().add(user("second"));
+
+        storage.get().addFriend(first.getId(), second.getId());
+        storage.get().removeFriend(first.getId(), second.getId());
+
+        Assertions.assertFalse(lockedOut.isEmpty());
+        Assertions.assertFalse(lockedOut.contains(true));
+    }
+
+    private User user(String login) {
+        return User.builder()
+                .login(login)
+                .email(login + "@mail.ru")
+                .birthday(LocalDate.of(2000, 1, 1))
+                .build();
+    }
+}
@@ -0,0 +1,70 @@
+package ru.yandex.practicum.filmorate.storageTest;
+
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.storage.catalog.ReferenceDataCatalog;
+import ru.yandex.practicum.filmorate.storage.film.FilmDbStorage;
+
+import javax.sql.DataSource;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+public class MigrationTest {
+    private final DataSource dataSource = new DriverManagerDataSource(
+            "jdbc:h2:mem:migration-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1", "sa", "");
+    private final JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+
+    @Test
+    public void shouldUpgradeDatabaseCreatedBySchemaSql() {
+        // Схема из schema.sql до перехода на Flyway.
+        jdbcTemplate.execute("CREATE TABLE films(id LONG PRIMARY KEY AUTO_INCREMENT, name VARCHAR NOT NULL, "
+                + "description VARCHAR(200), releaseDate DATE, duration INTEGER, rate LONG, ratingMPAId INTEGER)");
+        jdbcTemplate.execute("CREATE TABLE users(id LONG PRIMARY KEY AUTO_INCREMENT, email VARCHAR NOT NULL, "
+                + "login VARCHAR NOT NULL, name VARCHAR, birthday DATE)");
+        jdbcTemplate.execute("CREATE TABLE genreNames(genreId INTEGER PRIMARY KEY AUTO_INCREMENT, genre VARCHAR)");
+        jdbcTemplate.execute("CREATE TABLE genre(filmId INTEGER, genreId INTEGER, PRIMARY KEY (filmId, genreId))");
+        jdbcTemplate.execute("CREATE TABLE MPARatings(ratingMPAId INTEGER PRIMARY KEY AUTO_INCREMENT, ratingname VARCHAR)");
+        jdbcTemplate.execute("CREATE TABLE filmLikes(filmId INTEGER, userId LONG, PRIMARY KEY (filmId, userId))");
+        jdbcTemplate.execute("CREATE TABLE userFriends(userId LONG, friendsId LONG, status BOOLEAN, "
+                + "PRIMARY KEY (userId, friendsId))");
+        jdbcTemplate.update("INSERT INTO films (name, rate) VALUES ('old', NULL)");
+
+        Flyway.configure().dataSource(dataSource).baselineOnMigrate(true).baselineVersion("1").load().migrate();
+
+        Assertions.assertEquals("INTEGER", jdbcTemplate.queryForObject("SELECT DATA_TYPE FROM INFORMATION_SCHEMA.COLUMNS "
+                + "WHERE TABLE_NAME = 'FILMS' AND COLUMN_NAME = 'RATE'", String.class));
+        Assertions.assertEquals("NO", jdbcTemplate.queryForObject("SELECT IS_NULLABLE FROM INFORMATION_SCHEMA.COLUMNS "
+                + "WHERE TABLE_NAME = 'FILMS' AND COLUMN_NAME = 'RATE'", String.class));
+        Assertions.assertEquals(0, jdbcTemplate.queryForObject("SELECT rate FROM films", Integer.class));
+        Assertions.assertEquals(1, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM INFORMATION_SCHEMA.INDEXES "
+                + "WHERE INDEX_NAME = 'FILMS_RATE_IDX'", Integer.class));
+    }
+
+    @Test
+    public void shouldBackfillRateFromExistingLikes() {
+        Flyway.configure().dataSource(dataSource).target("4").load().migrate();
+        for (int i = 1; i <= 3; i++) {
+            jdbcTemplate.update("INSERT INTO films (name, releaseDate, duration, ratingMPAId) VALUES (?, '2000-01-01', 90, 1)",
+                    "film" + i);
+        }
+        // Лайки записаны в обход addLike, поэтому rate у всех фильмов остался 0.
+        jdbcTemplate.update("INSERT INTO filmLikes (filmId, userId) VALUES (2, 1), (2, 2), (2, 3), (3, 1), (3, 2)");
+
+        Flyway.configure().dataSource(dataSource).load().migrate();
+
+        ReferenceDataCatalog catalog = new ReferenceDataCatalog(jdbcTemplate);
+        catalog.reload();
+        FilmDbStorage filmStorage = new FilmDbStorage(jdbcTemplate, catalog, event -> {
+        }, new TransactionTemplate(new DataSourceTransactionManager(dataSource)));
+        List<Long> popular = filmStorage.getPopular(3).stream().map(Film::getId).collect(Collectors.toList());
+        Assertions.assertEquals(List.of(2L, 3L, 1L), popular);
+        Assertions.assertEquals(3, filmStorage.getById(2L).orElseThrow().getRate());
+    }
+}